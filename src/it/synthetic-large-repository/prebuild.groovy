@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/*
+ * Generates a local repository (in Maven 2 layout) with synthetic artifacts:
+ * - "layer-<layer>-<index>": LAYERS x WIDTH artifacts, each having provided dependencies on FAN_OUT artifacts of the next layer
+ *   (leading to many diamonds and an exponential number of paths)
+ * - "chain-<index>": a chain of CHAIN_LENGTH artifacts each having a provided dependency on the next one
+ * - "optional-<layer>-<index>": optional provided dependencies of every tenth layer artifact
+ * - "root": the project's only dependency, with provided dependencies on the first layer and the chain
+ * - "runtime": a JAR with compile dependencies on all layer and chain artifacts except the missing ones
+ * The expected numbers of violations are written to "synthetic-repository.properties".
+ */
+final String GROUP_ID = 'org.apache.sling.maven.enforcer.it.synthetic'
+final String VERSION = '1.0'
+final int LAYERS = 40
+final int WIDTH = 75
+final int FAN_OUT = 3
+final int CHAIN_LENGTH = 300
+
+File repository = new File(basedir, 'repository')
+File groupDirectory = new File(repository, GROUP_ID.replace('.', '/'))
+// an empty ZIP file (i.e. only the end of central directory record)
+byte[] emptyJar = new byte[22]
+emptyJar[0] = 0x50
+emptyJar[1] = 0x4b
+emptyJar[2] = 0x05
+emptyJar[3] = 0x06
+
+def isMissing = { String artifactId ->
+    def layerMatcher = artifactId =~ /^layer-(\d+)-(\d+)$/
+    if (layerMatcher.matches()) {
+        return (layerMatcher.group(1) as int) % 4 == 1 && (layerMatcher.group(2) as int) % 25 == 0
+    }
+    def chainMatcher = artifactId =~ /^chain-(\d+)$/
+    return chainMatcher.matches() && (chainMatcher.group(1) as int) % 100 == 50
+}
+
+def writeArtifact = { String artifactId, String packaging, List<Map> dependencies ->
+    File directory = new File(groupDirectory, "${artifactId}/${VERSION}")
+    directory.mkdirs()
+    StringBuilder pom = new StringBuilder()
+    pom << '<?xml version="1.0" encoding="UTF-8"?>\n'
+    pom << '<project xmlns="http://maven.apache.org/POM/4.0.0">\n'
+    pom << '  <modelVersion>4.0.0</modelVersion>\n'
+    pom << "  <groupId>${GROUP_ID}</groupId>\n"
+    pom << "  <artifactId>${artifactId}</artifactId>\n"
+    pom << "  <version>${VERSION}</version>\n"
+    pom << "  <packaging>${packaging}</packaging>\n"
+    pom << '  <dependencies>\n'
+    for (Map dependency : dependencies) {
+        pom << '    <dependency>\n'
+        pom << "      <groupId>${GROUP_ID}</groupId>\n"
+        pom << "      <artifactId>${dependency.artifactId}</artifactId>\n"
+        pom << "      <version>${VERSION}</version>\n"
+        pom << "      <scope>${dependency.scope}</scope>\n"
+        if (dependency.optional) {
+            pom << '      <optional>true</optional>\n'
+        }
+        pom << '    </dependency>\n'
+    }
+    pom << '  </dependencies>\n'
+    pom << '</project>\n'
+    new File(directory, "${artifactId}-${VERSION}.pom").setText(pom.toString(), 'UTF-8')
+    if (packaging == 'jar') {
+        new File(directory, "${artifactId}-${VERSION}.jar").bytes = emptyJar
+    }
+}
+
+List<String> runtimeArtifactIds = []
+int numMissing = 0
+int numOptionalMissing = 0
+def addArtifactId = { String artifactId ->
+    if (isMissing(artifactId)) {
+        numMissing++
+    } else {
+        runtimeArtifactIds << artifactId
+    }
+}
+for (int layer = 0; layer < LAYERS; layer++) {
+    for (int index = 0; index < WIDTH; index++) {
+        List<Map> dependencies = []
+        if (layer + 1 < LAYERS) {
+            for (int i = 0; i < FAN_OUT; i++) {
+                dependencies << [artifactId: "layer-${layer + 1}-${(index + i * 13) % WIDTH}", scope: 'provided']
+            }
+        }
+        if (index % 10 == 3) {
+            String optionalArtifactId = "optional-${layer}-${index}"
+            dependencies << [artifactId: optionalArtifactId, scope: 'provided', optional: true]
+            writeArtifact(optionalArtifactId, 'jar', [])
+            numOptionalMissing++
+        }
+        String artifactId = "layer-${layer}-${index}"
+        writeArtifact(artifactId, 'jar', dependencies)
+        addArtifactId(artifactId)
+    }
+}
+for (int index = 0; index < CHAIN_LENGTH; index++) {
+    String artifactId = "chain-${index}"
+    writeArtifact(artifactId, 'jar', index + 1 < CHAIN_LENGTH ? [[artifactId: "chain-${index + 1}", scope: 'provided']] : [])
+    addArtifactId(artifactId)
+}
+List<Map> rootDependencies = (0..<WIDTH).collect { [artifactId: "layer-0-${it}", scope: 'provided'] }
+rootDependencies << [artifactId: 'chain-0', scope: 'provided']
+writeArtifact('root', 'jar', rootDependencies)
+writeArtifact('runtime', 'jar', runtimeArtifactIds.collect { [artifactId: it, scope: 'compile'] })
+
+Properties properties = new Properties()
+properties.setProperty('artifacts', String.valueOf(LAYERS * WIDTH + numOptionalMissing + CHAIN_LENGTH + 2))
+properties.setProperty('missing', String.valueOf(numMissing))
+properties.setProperty('optionalMissing', String.valueOf(numOptionalMissing))
+new File(basedir, 'synthetic-repository.properties').withOutputStream { properties.store(it, 'Generated by prebuild.groovy') }
+println "Generated ${properties.getProperty('artifacts')} artifacts in ${repository}"
+return true
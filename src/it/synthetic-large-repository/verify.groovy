@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import groovy.json.JsonSlurper
+
+// the wall-clock budget of a single rule execution (the heap budget is given via invoker.mavenOpts)
+final long MAX_TOTAL_MILLIS = 30000
+
+Properties expected = new Properties()
+new File(basedir, 'synthetic-repository.properties').withInputStream { expected.load(it) }
+int numMissing = expected.getProperty('missing') as int
+int numOptionalMissing = expected.getProperty('optionalMissing') as int
+
+def readMetrics = { String name ->
+    File metricsFile = new File(basedir, "target/metrics-${name}.json")
+    assert metricsFile.isFile()
+    def metrics = new JsonSlurper().parse(metricsFile)
+    println "Metrics of execution ${name}: ${metrics}"
+    assert metrics.totalMillis < MAX_TOTAL_MILLIS : "Execution ${name} took ${metrics.totalMillis}ms, budget is ${MAX_TOTAL_MILLIS}ms"
+    return metrics
+}
+
+def defaultMetrics = readMetrics('default')
+assert defaultMetrics.counters.violations == numMissing
+assert defaultMetrics.counters.graphNodes > 3000
+
+def reuseMetrics = readMetrics('reuse')
+assert reuseMetrics.counters.violations == numMissing
+assert reuseMetrics.counters.graphNodes == defaultMetrics.counters.graphNodes
+assert reuseMetrics.counters.reusedProjectGraphNodes > 3000
+// all missing subtrees are collected with a single request and no descriptor is read separately
+assert reuseMetrics.counters.collectRequests == 1
+assert reuseMetrics.counters.readDescriptors == 0
+
+def profilesMetrics = readMetrics('profiles')
+assert profilesMetrics.counters.profiles == 2
+assert profilesMetrics.counters.'profile.default.violations' == numMissing
+assert profilesMetrics.counters.'profile.optionals.violations' == numMissing + numOptionalMissing
+
+File defaultReport = new File(basedir, 'target/enforcer-rules-reports/requireProvidedDependenciesInRuntimeClasspath-default.jsonl')
+assert defaultReport.readLines('UTF-8').size() == numMissing
+
+File buildLog = new File(basedir, 'build.log')
+assert buildLog.text.contains("Found ${numMissing} missing runtime dependencies")
+// the deep chain is shortened by the conflict resolution (as chain-249 is a direct dependency of "runtime" as well)
+assert buildLog.text.contains('Dependency org.apache.sling.maven.enforcer.it.synthetic:chain-250:jar:1.0 (provided) via ')
+assert true
@@ -0,0 +1,105 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.util.graph.selector.AndDependencySelector;
+import org.eclipse.aether.util.graph.selector.ExclusionDependencySelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the selector stack of the rule by evaluating it for every edge of a synthetic graph (as done during collection)
+ * compared to a stack using an {@link ExclusionDependencySelector} for the exclude patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DependencySelectorBenchmark {
+
+    @Param({"10000"})
+    public int nodes;
+
+    @Param({"10", "2000"})
+    public int excludePatterns;
+
+    private DependencyNode rootNode;
+    private DependencySelector selector;
+    private DependencySelector exclusionSelector;
+
+    @Setup
+    public void setUp() {
+        rootNode = SyntheticGraphs.createGraph(nodes, 10, 20, 0);
+        List<String> patterns = SyntheticGraphs.createExcludePatterns(excludePatterns);
+        RequireProvidedDependenciesInRuntimeClasspath rule = new RequireProvidedDependenciesInRuntimeClasspath();
+        selector = new AndDependencySelector(rule.createDependencySelectors(Collections.singletonList(ExcludesMatcher.compile(patterns))));
+        // the same stack but with all exclude patterns evaluated by an ExclusionDependencySelector
+        Collection<DependencySelector> exclusionSelectors = rule.createDependencySelectors(Collections.emptyList());
+        List<Exclusion> exclusions = new ArrayList<>();
+        for (String pattern : ExcludesMatcher.compile(patterns).getPatterns()) {
+            String[] parts = pattern.split(":");
+            exclusions.add(new Exclusion(parts[0], parts[1], parts[3], parts[2]));
+        }
+        exclusions.add(new Exclusion("*", "*", "*", "pom"));
+        exclusionSelectors.add(new ExclusionDependencySelector(exclusions));
+        exclusionSelector = new AndDependencySelector(exclusionSelectors);
+    }
+
+    @Benchmark
+    public int compiledExcludes() {
+        return select(rootNode, selector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, rootNode.getDependency(), Collections.emptyList())));
+    }
+
+    @Benchmark
+    public int exclusionDependencySelector() {
+        return select(rootNode, exclusionSelector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, rootNode.getDependency(), Collections.emptyList())));
+    }
+
+    /**
+     * Evaluates the selector for all children and derives the child selector for all selected ones.
+     * @return the number of selected nodes
+     */
+    private static int select(DependencyNode node, DependencySelector nodeSelector) {
+        int numSelected = 0;
+        for (DependencyNode child : node.getChildren()) {
+            if (nodeSelector.selectDependency(child.getDependency())) {
+                numSelected++;
+                DependencySelector childSelector = nodeSelector.deriveChildSelector(
+                        new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, child.getDependency(), Collections.emptyList()));
+                numSelected += select(child, childSelector);
+            }
+        }
+        return numSelected;
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.DependencyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link RequireProvidedDependenciesInRuntimeClasspath#checkForMissingArtifacts(CompactDependencyGraph, RuntimeArtifactsIndex, VersionCompatibilityChecker, org.apache.maven.enforcer.rule.api.EnforcerLogger, int, ViolationReportWriter, ClassLevelChecker, ReactorCache.ArtifactVerdictCache)}
+ * and the conversion to the {@link CompactDependencyGraph} on synthetic graphs of different size and duplication.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MissingArtifactsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int nodes;
+
+    @Param({"10"})
+    public int width;
+
+    @Param({"20"})
+    public int depth;
+
+    /** the probability that a child is an already existing node */
+    @Param({"0", "0.5"})
+    public double duplication;
+
+    private DependencyNode rootNode;
+    private CompactDependencyGraph graph;
+    private List<Artifact> runtimeArtifacts;
+    private RuntimeArtifactsIndex runtimeArtifactsIndex;
+    private RequireProvidedDependenciesInRuntimeClasspath rule;
+
+    @Setup
+    public void setUp() {
+        rootNode = SyntheticGraphs.createGraph(nodes, width, depth, duplication);
+        graph = CompactDependencyGraph.of(rootNode);
+        runtimeArtifacts = SyntheticGraphs.createRuntimeArtifacts(nodes, 0.01, 0.01);
+        runtimeArtifactsIndex = new RuntimeArtifactsIndex(runtimeArtifacts);
+        rule = new RequireProvidedDependenciesInRuntimeClasspath();
+    }
+
+    @Benchmark
+    public int checkForMissingArtifacts() {
+        // a new checker per execution as in the rule (without reactor cache)
+        VersionCompatibilityChecker checker = new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER);
+        return rule.checkForMissingArtifacts(graph, runtimeArtifactsIndex, checker, new SyntheticGraphs.NoopEnforcerLogger(), 0, null, null, null).getNumMissingArtifacts();
+    }
+
+    @Benchmark
+    public CompactDependencyGraph convertGraph() {
+        return CompactDependencyGraph.of(rootNode);
+    }
+
+    @Benchmark
+    public RuntimeArtifactsIndex indexRuntimeArtifacts() {
+        return new RuntimeArtifactsIndex(runtimeArtifacts);
+    }
+}
@@ -0,0 +1,194 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+
+/**
+ * Creates synthetic dependency graphs and runtime classpaths for the benchmarks.
+ * All graphs are created with a fixed seed, i.e. the same parameters always lead to the same graph.
+ */
+final class SyntheticGraphs {
+
+    private static final int NUM_GROUPS = 50;
+    private static final int NUM_VERSIONS = 5;
+
+    private SyntheticGraphs() {
+    }
+
+    /**
+     * Creates a graph breadth-first until either the number of nodes or the depth is reached.
+     * 
+     * @param numNodes the maximum number of nodes
+     * @param width the number of children of each non-leaf node
+     * @param maxDepth the maximum depth (the root node has depth 0)
+     * @param duplication the probability (between 0 and 1) that a child is an already existing node (i.e. the graph becomes a DAG)
+     * @return the root node
+     */
+    static DependencyNode createGraph(int numNodes, int width, int maxDepth, double duplication) {
+        Random random = new Random(42);
+        List<DefaultDependencyNode> nodes = new ArrayList<>(numNodes);
+        List<Integer> depths = new ArrayList<>(numNodes);
+        nodes.add(createNode(0, 0));
+        depths.add(0);
+        for (int parentIndex = 0; parentIndex < nodes.size() && nodes.size() < numNodes; parentIndex++) {
+            DefaultDependencyNode parent = nodes.get(parentIndex);
+            int depth = depths.get(parentIndex) + 1;
+            if (depth > maxDepth) {
+                break;
+            }
+            List<DependencyNode> children = new ArrayList<>(width);
+            for (int i = 0; i < width && nodes.size() < numNodes; i++) {
+                // only nodes created after the parent can never be its ancestors (i.e. no cycles are created)
+                if (random.nextDouble() < duplication && nodes.size() > parentIndex + 1) {
+                    children.add(nodes.get(parentIndex + 1 + random.nextInt(nodes.size() - parentIndex - 1)));
+                } else {
+                    nodes.add(createNode(nodes.size(), depth));
+                    depths.add(depth);
+                    children.add(nodes.get(nodes.size() - 1));
+                }
+            }
+            parent.setChildren(children);
+        }
+        return nodes.get(0);
+    }
+
+    private static DefaultDependencyNode createNode(int index, int depth) {
+        // the rule checks the provided dependencies of the (compile scope) direct dependencies
+        DefaultDependencyNode node = new DefaultDependencyNode(new Dependency(createArtifact(index, index % NUM_VERSIONS), depth == 1 ? "compile" : "provided"));
+        node.setChildren(new ArrayList<>());
+        return node;
+    }
+
+    private static Artifact createArtifact(int index, int minorVersion) {
+        return new DefaultArtifact("org.example.group" + (index % NUM_GROUPS), "artifact" + index, "jar", "1." + minorVersion + ".0");
+    }
+
+    /**
+     * Creates a runtime classpath for a graph created with {@link #createGraph(int, int, int, double)}.
+     * 
+     * @param numNodes the number of nodes of the graph
+     * @param missingRatio the ratio (between 0 and 1) of artifacts which are not contained in the classpath
+     * @param incompatibleRatio the ratio (between 0 and 1) of artifacts which are only contained with an incompatible (lower) version
+     * @return the runtime artifacts (in random order)
+     */
+    static List<Artifact> createRuntimeArtifacts(int numNodes, double missingRatio, double incompatibleRatio) {
+        Random random = new Random(43);
+        List<Artifact> artifacts = new ArrayList<>(numNodes);
+        for (int index = 1; index < numNodes; index++) {
+            double value = random.nextDouble();
+            if (value < missingRatio) {
+                continue;
+            }
+            int requiredMinorVersion = index % NUM_VERSIONS;
+            if (value < missingRatio + incompatibleRatio && requiredMinorVersion > 0) {
+                artifacts.add(createArtifact(index, requiredMinorVersion - 1));
+            } else {
+                artifacts.add(createArtifact(index, NUM_VERSIONS));
+            }
+        }
+        Collections.shuffle(artifacts, random);
+        return artifacts;
+    }
+
+    /**
+     * 
+     * @param numPatterns the number of patterns
+     * @return exclude patterns with exact groupId and artifactId (90%) and with wildcards (10%), which mostly do not match the synthetic graphs
+     */
+    static List<String> createExcludePatterns(int numPatterns) {
+        List<String> patterns = new ArrayList<>(numPatterns);
+        for (int i = 0; i < numPatterns; i++) {
+            if (i % 10 == 9) {
+                patterns.add("org.other.group" + i + ":*:jar");
+            } else {
+                patterns.add("org.example.group" + (i % NUM_GROUPS) + ":excluded" + i);
+            }
+        }
+        return patterns;
+    }
+
+    /** Logger discarding all messages (but still creating them) */
+    static final class NoopEnforcerLogger implements EnforcerLogger {
+
+        private int numMessages;
+
+        int getNumMessages() {
+            return numMessages;
+        }
+
+        @Override
+        public void warnOrError(CharSequence message) {
+            numMessages++;
+        }
+
+        @Override
+        public void warnOrError(Supplier<CharSequence> messageSupplier) {
+            warnOrError(messageSupplier.get());
+        }
+
+        @Override
+        public void debug(CharSequence message) {
+        }
+
+        @Override
+        public void debug(Supplier<CharSequence> messageSupplier) {
+        }
+
+        @Override
+        public void info(CharSequence message) {
+        }
+
+        @Override
+        public void info(Supplier<CharSequence> messageSupplier) {
+        }
+
+        @Override
+        public void warn(CharSequence message) {
+            numMessages++;
+        }
+
+        @Override
+        public void warn(Supplier<CharSequence> messageSupplier) {
+            warn(messageSupplier.get());
+        }
+
+        @Override
+        public void error(CharSequence message) {
+            numMessages++;
+        }
+
+        @Override
+        public void error(Supplier<CharSequence> messageSupplier) {
+            error(messageSupplier.get());
+        }
+    }
+}
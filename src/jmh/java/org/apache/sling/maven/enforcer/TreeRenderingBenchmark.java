@@ -0,0 +1,63 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.graph.DependencyNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the rendering of the dependency tree (as used for the debug output and in case of collection failures).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TreeRenderingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    /** a small width leads to deep graphs */
+    @Param({"2", "10"})
+    public int width;
+
+    private DependencyNode rootNode;
+
+    @Setup
+    public void setUp() {
+        rootNode = SyntheticGraphs.createGraph(nodes, width, 1000, 0);
+    }
+
+    @Benchmark
+    public long dependencyTreeRenderer() throws IOException {
+        long[] numChars = new long[1];
+        new DependencyTreeRenderer(-1, 0).render(rootNode, line -> numChars[0] += line.length());
+        return numChars[0];
+    }
+}
@@ -0,0 +1,85 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the lookup of a single artifact in the runtime classpath and the version compatibility check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersionCheckBenchmark {
+
+    /** the number of runtime artifacts */
+    @Param({"100", "1000"})
+    public int runtimeArtifacts;
+
+    private List<Artifact> runtimeArtifactList;
+    private RuntimeArtifactsIndex runtimeArtifactsIndex;
+    private VersionCompatibilityChecker checker;
+    private Artifact artifact;
+    private SyntheticGraphs.NoopEnforcerLogger log;
+
+    @Setup
+    public void setUp() {
+        runtimeArtifactList = SyntheticGraphs.createRuntimeArtifacts(runtimeArtifacts, 0, 0);
+        runtimeArtifactsIndex = new RuntimeArtifactsIndex(runtimeArtifactList);
+        checker = new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER);
+        // contained in the middle of the classpath
+        artifact = new DefaultArtifact(runtimeArtifactList.get(runtimeArtifacts / 2).toString()).setVersion("1.0.0");
+        log = new SyntheticGraphs.NoopEnforcerLogger();
+    }
+
+    @Benchmark
+    public boolean isVersionCompatible() throws InvalidVersionSpecificationException {
+        return RequireProvidedDependenciesInRuntimeClasspath.isVersionCompatible("1.2.0", "1.3.1");
+    }
+
+    @Benchmark
+    public boolean isVersionCompatibleMemoized() throws InvalidVersionSpecificationException {
+        return checker.isCompatible("1.2.0", "1.3.1");
+    }
+
+    @Benchmark
+    public boolean isCompatibleArtifactContainedInList() throws InvalidVersionSpecificationException {
+        // builds the index for every call
+        return RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInList(artifact, runtimeArtifactList, log);
+    }
+
+    @Benchmark
+    public boolean isCompatibleArtifactContainedInIndex() throws InvalidVersionSpecificationException {
+        return RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(artifact, runtimeArtifactsIndex, checker, log);
+    }
+}
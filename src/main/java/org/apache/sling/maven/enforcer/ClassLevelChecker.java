@@ -0,0 +1,125 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * Checks whether a dependency which is missing in the runtime classpath is actually needed at class level.
+ * <p>
+ * This is the case if the project's own classes reference a class which is neither contained in the runtime classpath
+ * nor provided by the JRE but contained in the missing dependency. Therefore repackaged (shaded) APIs or classes which moved to
+ * another artifact of the runtime classpath no longer lead to violations. Only direct references from the project's classes are considered,
+ * i.e. classes only needed by the project's dependencies are not detected.
+ */
+final class ClassLevelChecker {
+
+    /** Resolves the file of an artifact */
+    interface ArtifactFileResolver {
+        File resolve(Artifact artifact) throws IOException;
+    }
+
+    private final Set<String> unresolvableClasses;
+    private final ArtifactFileResolver artifactFileResolver;
+    private final ClassLoader jreClassLoader;
+
+    /**
+     *
+     * @param referencedClasses the classes referenced by the project's own classes (in internal form)
+     * @param runtimeClasspath the JAR files and class directories of the runtime classpath
+     * @param artifactFileResolver the resolver for the files of the missing dependencies
+     * @param log the logger
+     */
+    ClassLevelChecker(Set<String> referencedClasses, Collection<File> runtimeClasspath, ArtifactFileResolver artifactFileResolver, EnforcerLogger log) {
+        this.artifactFileResolver = artifactFileResolver;
+        // the extension (Java 8) or platform class loader (Java 9+)
+        this.jreClassLoader = ClassLoader.getSystemClassLoader().getParent();
+        // built once so that every referenced class is looked up only once (instead of once per runtime JAR)
+        Map<String, File> runtimeClassFiles = new HashMap<>();
+        for (File file : runtimeClasspath) {
+            if (file == null || !file.exists()) {
+                continue;
+            }
+            try {
+                for (String className : JarClassIndex.of(file).getClassNames()) {
+                    runtimeClassFiles.putIfAbsent(className, file);
+                }
+            } catch (IOException e) {
+                log.debug("Could not index the classes of runtime dependency " + file + ": " + e.getMessage());
+            }
+        }
+        Set<String> classes = new TreeSet<>();
+        for (String referencedClass : referencedClasses) {
+            if (!runtimeClassFiles.containsKey(referencedClass) && !isJreClass(referencedClass)) {
+                classes.add(referencedClass);
+            }
+        }
+        this.unresolvableClasses = Collections.unmodifiableSet(classes);
+    }
+
+    private boolean isJreClass(String internalClassName) {
+        return internalClassName.startsWith("java/") || jreClassLoader.getResource(internalClassName + ".class") != null;
+    }
+
+    /**
+     *
+     * @return the classes referenced by the project which are not available in the runtime classpath (in internal form)
+     */
+    Set<String> getUnresolvableClasses() {
+        return unresolvableClasses;
+    }
+
+    /**
+     *
+     * @param artifact the missing dependency
+     * @return the classes of the given dependency which are referenced by the project but not available in the runtime classpath
+     *     (in binary form, e.g. {@code org.example.Foo$Bar}), empty in case the dependency is not needed at class level
+     * @throws IOException in case the dependency's file cannot be resolved or read
+     */
+    List<String> getUnresolvableClasses(Artifact artifact) throws IOException {
+        if (unresolvableClasses.isEmpty()) {
+            return Collections.emptyList();
+        }
+        File file = artifactFileResolver.resolve(artifact);
+        if (file == null) {
+            throw new IOException("Could not resolve the file of " + artifact);
+        }
+        JarClassIndex index = JarClassIndex.of(file);
+        List<String> classes = new ArrayList<>();
+        for (String unresolvableClass : unresolvableClasses) {
+            if (index.contains(unresolvableClass)) {
+                classes.add(unresolvableClass.replace('/', '.'));
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,204 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Extracts the classes referenced from the constant pools of class files.
+ * <p>
+ * Only {@code CONSTANT_Class} entries are considered, as those are the ones resolved by the JVM when the referencing code is executed
+ * (e.g. instantiations, method invocations, field accesses, casts and exception handlers).
+ * Array types are reduced to their element types, primitive arrays are ignored.
+ */
+final class ClassReferenceScanner {
+
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private ClassReferenceScanner() {
+    }
+
+    /**
+     * Scans all class files below the given directory.
+     * @param classesDirectory the directory
+     * @return the referenced classes in internal form (e.g. {@code java/lang/String}), without the classes contained in the directory itself
+     * @throws IOException in case the directory or one of the class files cannot be read
+     */
+    static Set<String> getReferencedClasses(Path classesDirectory) throws IOException {
+        Set<String> referencedClasses = new TreeSet<>();
+        Set<String> ownClasses = new TreeSet<>();
+        try (Stream<Path> files = Files.walk(classesDirectory)) {
+            Iterator<Path> iterator = files.filter(f -> f.getFileName().toString().endsWith(".class")).iterator();
+            while (iterator.hasNext()) {
+                Path classFile = iterator.next();
+                ownClasses.add(addReferencedClasses(ByteBuffer.wrap(Files.readAllBytes(classFile)), referencedClasses, classFile.toString()));
+            }
+        }
+        referencedClasses.removeAll(ownClasses);
+        return referencedClasses;
+    }
+
+    /**
+     * Adds the classes referenced from the given class file's constant pool.
+     * @param classFile the content of the class file
+     * @param referencedClasses the collection to which to add the referenced classes (in internal form)
+     * @param description the description of the class file used in exception messages
+     * @return the name of the class defined by the class file (in internal form)
+     * @throws IOException in case the content is no valid class file
+     */
+    static String addReferencedClasses(ByteBuffer classFile, Collection<String> referencedClasses, String description) throws IOException {
+        try {
+            if (classFile.getInt() != CLASS_FILE_MAGIC) {
+                throw new IOException("Invalid class file " + description);
+            }
+            // minor and major version
+            classFile.getInt();
+            int constantPoolCount = Short.toUnsignedInt(classFile.getShort());
+            String[] utf8Entries = new String[constantPoolCount];
+            int[] classNameIndices = new int[constantPoolCount];
+            int numClassEntries = 0;
+            int[] classEntryIndices = new int[constantPoolCount];
+            for (int index = 1; index < constantPoolCount; index++) {
+                int tag = Byte.toUnsignedInt(classFile.get());
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        utf8Entries[index] = readModifiedUtf8(classFile);
+                        break;
+                    case CONSTANT_CLASS:
+                        classNameIndices[index] = Short.toUnsignedInt(classFile.getShort());
+                        classEntryIndices[numClassEntries++] = index;
+                        break;
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        skip(classFile, 2);
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        skip(classFile, 3);
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        skip(classFile, 4);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        skip(classFile, 8);
+                        // occupies two entries
+                        index++;
+                        break;
+                    default:
+                        throw new IOException("Invalid constant pool tag " + tag + " in class file " + description);
+                }
+            }
+            // access flags
+            classFile.getShort();
+            int thisClassIndex = Short.toUnsignedInt(classFile.getShort());
+            for (int i = 0; i < numClassEntries; i++) {
+                int index = classEntryIndices[i];
+                if (index != thisClassIndex) {
+                    String elementType = getElementType(utf8Entries[classNameIndices[index]]);
+                    if (elementType != null) {
+                        referencedClasses.add(elementType);
+                    }
+                }
+            }
+            return utf8Entries[classNameIndices[thisClassIndex]];
+        } catch (RuntimeException e) {
+            // e.g. BufferUnderflowException or ArrayIndexOutOfBoundsException
+            throw new IOException("Invalid class file " + description + ": " + e, e);
+        }
+    }
+
+    /**
+     *
+     * @param className the internal class name or array descriptor
+     * @return the class name for arrays of objects, the class name itself for non-arrays or {@code null} for arrays of primitives
+     */
+    private static String getElementType(String className) {
+        if (className.isEmpty() || className.charAt(0) != '[') {
+            return className;
+        }
+        int start = className.lastIndexOf('[') + 1;
+        if (className.charAt(start) != 'L') {
+            return null;
+        }
+        return className.substring(start + 1, className.length() - 1);
+    }
+
+    private static void skip(ByteBuffer buffer, int numBytes) {
+        buffer.position(buffer.position() + numBytes);
+    }
+
+    /**
+     * Reads a string in the JVM's modified UTF-8 encoding (as used by {@link java.io.DataInput#readUTF()}).
+     */
+    private static String readModifiedUtf8(ByteBuffer buffer) throws IOException {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        char[] chars = new char[length];
+        int numChars = 0;
+        int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            int b = Byte.toUnsignedInt(buffer.get());
+            if (b < 0x80) {
+                chars[numChars++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[numChars++] = (char) (((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[numChars++] = (char) (((b & 0x0F) << 12) | ((buffer.get() & 0x3F) << 6) | (buffer.get() & 0x3F));
+            } else {
+                throw new IOException("Invalid modified UTF-8 byte " + b);
+            }
+        }
+        return new String(chars, 0, numChars);
+    }
+}
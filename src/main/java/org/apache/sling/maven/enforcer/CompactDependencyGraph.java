@@ -0,0 +1,295 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.DependencyVisitor;
+
+/**
+ * Immutable, memory efficient representation of a dependency graph which does not reference any of the original {@link DependencyNode}s.
+ * <p>
+ * Every distinct {@link DependencyNode} instance is represented by an int id, assigned in the (depth-first) pre-order in which the graph
+ * is visited, i.e. the root node has id 0. Artifact coordinates and scopes are interned, so every node only occupies a coordinate id,
+ * a scope id and an optional flag. The edges are stored in compressed sparse row format (i.e. the children of node {@code n} are
+ * {@code children[childOffsets[n]]} to {@code children[childOffsets[n+1]-1]}) and include edges closing cycles.
+ */
+final class CompactDependencyGraph {
+
+    private final String[] coordinates;
+    private final Artifact[] artifacts;
+    private final String[] scopes;
+    private final int[] nodeCoordinates;
+    private final byte[] nodeScopes;
+    private final BitSet optionalNodes;
+    private final int[] childOffsets;
+    private final int[] children;
+
+    private CompactDependencyGraph(String[] coordinates, Artifact[] artifacts, String[] scopes, int[] nodeCoordinates, byte[] nodeScopes,
+            BitSet optionalNodes, int[] childOffsets, int[] children) {
+        this.coordinates = coordinates;
+        this.artifacts = artifacts;
+        this.scopes = scopes;
+        this.nodeCoordinates = nodeCoordinates;
+        this.nodeScopes = nodeScopes;
+        this.optionalNodes = optionalNodes;
+        this.childOffsets = childOffsets;
+        this.children = children;
+    }
+
+    /**
+     *
+     * @param rootNode the root node of the dependency graph
+     * @return the compact representation of the graph reachable from the given root node
+     */
+    static CompactDependencyGraph of(DependencyNode rootNode) {
+        Builder builder = new Builder();
+        rootNode.accept(builder);
+        return builder.build();
+    }
+
+    int getNumNodes() {
+        return nodeCoordinates.length;
+    }
+
+    int getNumEdges() {
+        return children.length;
+    }
+
+    /**
+     *
+     * @return the number of distinct artifact coordinates (including the one of the root node)
+     */
+    int getNumCoordinates() {
+        return coordinates.length;
+    }
+
+    /**
+     *
+     * @param node the node id
+     * @return the id of the node's artifact coordinate (ids are assigned in the order of the first occurrence in pre-order)
+     */
+    int getCoordinateId(int node) {
+        return nodeCoordinates[node];
+    }
+
+    /**
+     *
+     * @param node the node id
+     * @return the node's artifact (only containing the coordinates and shared by all nodes with the same coordinates)
+     */
+    Artifact getArtifact(int node) {
+        return artifacts[nodeCoordinates[node]];
+    }
+
+    /**
+     *
+     * @param node the node id
+     * @return the string representation of the node's artifact, i.e. the same as {@link Artifact#toString()}
+     */
+    String getCoordinates(int node) {
+        return coordinates[nodeCoordinates[node]];
+    }
+
+    String getScope(int node) {
+        return scopes[nodeScopes[node]];
+    }
+
+    boolean isOptional(int node) {
+        return optionalNodes.get(node);
+    }
+
+    /**
+     *
+     * @param node the node id
+     * @return the string representation of the node's dependency, i.e. the same as {@link Dependency#toString()}
+     */
+    String getDependencyString(int node) {
+        return getCoordinates(node) + " (" + getScope(node) + (isOptional(node) ? "?" : "") + ")";
+    }
+
+    /**
+     *
+     * @param node the node id
+     * @return the index of the node's first child in {@link #getChild(int)}
+     */
+    int getFirstChildIndex(int node) {
+        return childOffsets[node];
+    }
+
+    /**
+     *
+     * @param node the node id
+     * @return the index after the node's last child in {@link #getChild(int)}
+     */
+    int getEndChildIndex(int node) {
+        return childOffsets[node + 1];
+    }
+
+    /**
+     *
+     * @param index the child index (between {@link #getFirstChildIndex(int)} inclusive and {@link #getEndChildIndex(int)} exclusive)
+     * @return the id of the child node
+     */
+    int getChild(int index) {
+        return children[index];
+    }
+
+    /**
+     * Creates the graph while visiting the dependency nodes. Nodes reachable via multiple paths (or closing a cycle) are not entered again.
+     */
+    static final class Builder implements DependencyVisitor {
+        private final Map<DependencyNode, Integer> nodeIds = new IdentityHashMap<>();
+        private final Map<String, Integer> coordinateIds = new HashMap<>();
+        private final List<String> coordinates = new ArrayList<>();
+        private final List<Artifact> artifacts = new ArrayList<>();
+        private final List<String> scopes = new ArrayList<>();
+        private final IntList nodeCoordinates = new IntList();
+        private final IntList nodeScopes = new IntList();
+        private final BitSet optionalNodes = new BitSet();
+        private final IntList edgeSources = new IntList();
+        private final IntList edgeTargets = new IntList();
+        /** the ids of the entered nodes, -1 for nodes which have not been entered again */
+        private final IntList stack = new IntList();
+
+        @Override
+        public boolean visitEnter(DependencyNode node) {
+            int parent = stack.size() > 0 ? stack.get(stack.size() - 1) : -1;
+            Integer id = nodeIds.get(node);
+            boolean isNew = id == null;
+            if (isNew) {
+                id = nodeIds.size();
+                nodeIds.put(node, id);
+                addNode(id, node);
+            }
+            if (parent >= 0) {
+                edgeSources.add(parent);
+                edgeTargets.add(id);
+            }
+            stack.add(isNew ? id : -1);
+            return isNew;
+        }
+
+        @Override
+        public boolean visitLeave(DependencyNode node) {
+            stack.removeLast();
+            return true;
+        }
+
+        /**
+         *
+         * @return {@code true} in case the root node has been left (i.e. the whole graph has been visited)
+         */
+        boolean isComplete() {
+            return stack.size() == 0 && !nodeIds.isEmpty();
+        }
+
+        private void addNode(int id, DependencyNode node) {
+            Artifact artifact = node.getArtifact();
+            String coordinate = String.valueOf(artifact);
+            Integer coordinateId = coordinateIds.get(coordinate);
+            if (coordinateId == null) {
+                coordinateId = coordinates.size();
+                coordinateIds.put(coordinate, coordinateId);
+                coordinates.add(coordinate);
+                // a copy not retaining the properties and file of the original artifact
+                artifacts.add(artifact != null ? new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier(),
+                        artifact.getExtension(), artifact.getVersion()) : null);
+            }
+            nodeCoordinates.add(coordinateId);
+            Dependency dependency = node.getDependency();
+            String scope = dependency != null ? dependency.getScope() : "";
+            int scopeId = scopes.indexOf(scope);
+            if (scopeId < 0) {
+                if (scopes.size() > Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct scopes");
+                }
+                scopeId = scopes.size();
+                scopes.add(scope);
+            }
+            nodeScopes.add(scopeId);
+            if (dependency != null && dependency.isOptional()) {
+                optionalNodes.set(id);
+            }
+        }
+
+        CompactDependencyGraph build() {
+            int numNodes = nodeIds.size();
+            // stable counting sort of the edges by source (keeps the order of the children)
+            int[] childOffsets = new int[numNodes + 1];
+            for (int i = 0; i < edgeSources.size(); i++) {
+                childOffsets[edgeSources.get(i) + 1]++;
+            }
+            for (int node = 0; node < numNodes; node++) {
+                childOffsets[node + 1] += childOffsets[node];
+            }
+            int[] nextIndex = Arrays.copyOf(childOffsets, numNodes);
+            int[] children = new int[edgeTargets.size()];
+            for (int i = 0; i < edgeSources.size(); i++) {
+                children[nextIndex[edgeSources.get(i)]++] = edgeTargets.get(i);
+            }
+            byte[] scopeIds = new byte[numNodes];
+            for (int node = 0; node < numNodes; node++) {
+                scopeIds[node] = (byte) nodeScopes.get(node);
+            }
+            return new CompactDependencyGraph(coordinates.toArray(new String[0]), artifacts.toArray(new Artifact[0]), scopes.toArray(new String[0]),
+                    nodeCoordinates.toArray(), scopeIds, (BitSet) optionalNodes.clone(), childOffsets, children);
+        }
+    }
+
+    /** Growable array of primitive ints */
+    static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+
+/**
+ * Applies a {@link DependencySelector} to an already collected dependency graph, i.e. returns the subgraph which would have been collected
+ * with the given selector (disregarding differences in conflict resolution). This allows to evaluate multiple selectors
+ * with a single collection of the union of their graphs (see {@link UnionDependencySelector}).
+ * <p>
+ * The selector is applied top-down in the same way as during the collection. Nodes are copied for every distinct combination of original node
+ * and derived child selector, so shared subtrees and cycles of the original graph are retained as long as the selector's state
+ * is the same on all paths. The original graph is not modified.
+ * <p>
+ * Like during the collection the selector is called with the dependency before management, while the child selector is derived
+ * from the managed one. The dependency before management is reconstructed from the premanaged data of the nodes, therefore the graph must have
+ * been collected with {@link DependencyManagerUtils#CONFIG_PROP_VERBOSE} (otherwise the managed dependency is passed to the selector).
+ */
+final class DependencyGraphFilter {
+
+    private final DependencySelector selector;
+    private final RepositorySystemSession session;
+
+    /**
+     *
+     * @param selector the selector to apply (as used for the collection, i.e. the child selector for the root is derived first)
+     * @param session the session passed to the selector via the {@link org.eclipse.aether.collection.DependencyCollectionContext}
+     */
+    DependencyGraphFilter(DependencySelector selector, RepositorySystemSession session) {
+        this.selector = selector;
+        this.session = session;
+    }
+
+    /**
+     *
+     * @param rootNode the root node of the original graph
+     * @return the root node of the filtered copy of the graph
+     */
+    DependencyNode filter(DependencyNode rootNode) {
+        Map<NodeAndSelector, DefaultDependencyNode> copies = new HashMap<>();
+        DefaultDependencyNode rootCopy = new DefaultDependencyNode(rootNode);
+        Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(rootNode, rootCopy, selector.deriveChildSelector(
+                new SubtreeDependencyCollector.SimpleDependencyCollectionContext(session, rootNode.getDependency(), Collections.emptyList()))));
+        while (!frames.isEmpty()) {
+            Frame frame = frames.pop();
+            for (DependencyNode child : frame.node.getChildren()) {
+                if (!frame.childSelector.selectDependency(getPremanagedDependency(child))) {
+                    continue;
+                }
+                DependencySelector grandChildSelector = frame.childSelector.deriveChildSelector(
+                        new SubtreeDependencyCollector.SimpleDependencyCollectionContext(session, child.getDependency(), Collections.emptyList()));
+                NodeAndSelector key = new NodeAndSelector(child, grandChildSelector);
+                DefaultDependencyNode childCopy = copies.get(key);
+                if (childCopy == null) {
+                    childCopy = new DefaultDependencyNode(child);
+                    copies.put(key, childCopy);
+                    frames.push(new Frame(child, childCopy, grandChildSelector));
+                }
+                frame.copy.getChildren().add(childCopy);
+            }
+        }
+        return rootCopy;
+    }
+
+    /**
+     * 
+     * @param node the node
+     * @return the node's dependency with the version, scope and optional flag it had before the dependency management has been applied
+     */
+    static Dependency getPremanagedDependency(DependencyNode node) {
+        Dependency dependency = node.getDependency();
+        int managedBits = node.getManagedBits();
+        if (managedBits == 0) {
+            return dependency;
+        }
+        // the data is accessed directly as the utility methods are not available in all Maven versions
+        Map<?, ?> data = node.getData();
+        Object premanagedVersion = data.get(DependencyManagerUtils.NODE_DATA_PREMANAGED_VERSION);
+        if ((managedBits & DependencyNode.MANAGED_VERSION) != 0 && premanagedVersion instanceof String) {
+            dependency = dependency.setArtifact(dependency.getArtifact().setVersion((String) premanagedVersion));
+        }
+        Object premanagedScope = data.get(DependencyManagerUtils.NODE_DATA_PREMANAGED_SCOPE);
+        if ((managedBits & DependencyNode.MANAGED_SCOPE) != 0 && premanagedScope instanceof String) {
+            dependency = dependency.setScope((String) premanagedScope);
+        }
+        if ((managedBits & DependencyNode.MANAGED_OPTIONAL) != 0 && data.containsKey(DependencyManagerUtils.NODE_DATA_PREMANAGED_OPTIONAL)) {
+            dependency = dependency.setOptional((Boolean) data.get(DependencyManagerUtils.NODE_DATA_PREMANAGED_OPTIONAL));
+        }
+        return dependency;
+    }
+
+    private static final class Frame {
+        private final DependencyNode node;
+        private final DependencyNode copy;
+        private final DependencySelector childSelector;
+
+        Frame(DependencyNode node, DependencyNode copy, DependencySelector childSelector) {
+            this.node = node;
+            this.copy = copy;
+            this.childSelector = childSelector;
+        }
+    }
+
+    /** Key consisting of the identity of the original node and the selector for its children */
+    private static final class NodeAndSelector {
+        private final DependencyNode node;
+        private final DependencySelector selector;
+
+        NodeAndSelector(DependencyNode node, DependencySelector selector) {
+            this.node = node;
+            this.selector = selector;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(node) + selector.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            NodeAndSelector other = (NodeAndSelector) obj;
+            return node == other.node && selector.equals(other.selector);
+        }
+    }
+}
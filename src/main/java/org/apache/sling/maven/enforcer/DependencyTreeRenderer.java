@@ -0,0 +1,177 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.eclipse.aether.graph.DependencyNode;
+
+/**
+ * Renders a dependency graph as indented tree, line by line, without ever keeping the whole output in memory.
+ * Nodes which are reachable via multiple paths are only rendered (including their children) for the first path.
+ * The output is bounded by a maximum depth and a maximum number of rendered nodes.
+ * <p>
+ * The graph is traversed iteratively, i.e. arbitrarily deep graphs can be rendered.
+ * Each instance should only be used for rendering a single graph.
+ */
+final class DependencyTreeRenderer {
+
+    private static final String INDENT = "    ";
+
+    /** Receives the rendered lines */
+    interface LineWriter {
+        void writeLine(CharSequence line) throws IOException;
+    }
+
+    private final int maxDepth;
+    private final int maxNodes;
+    private int numRenderedNodes;
+    private boolean isTruncated;
+
+    /**
+     *
+     * @param maxDepth the maximum depth of rendered nodes (the root node has depth 0), a negative value means no limit
+     * @param maxNodes the maximum number of rendered nodes, a value less than 1 means no limit
+     */
+    DependencyTreeRenderer(int maxDepth, int maxNodes) {
+        this.maxDepth = maxDepth < 0 ? Integer.MAX_VALUE : maxDepth;
+        this.maxNodes = maxNodes < 1 ? Integer.MAX_VALUE : maxNodes;
+    }
+
+    /**
+     * Renders the tree into the given file (parent directories are created if necessary).
+     * @param rootNode the root node
+     * @param file the file to write to (overwritten if it exists)
+     * @throws IOException in case the file cannot be written
+     */
+    void render(DependencyNode rootNode, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            render(rootNode, line -> {
+                writer.append(line);
+                writer.newLine();
+            });
+        }
+    }
+
+    /**
+     * Renders the tree with one debug message per line.
+     * @param rootNode the root node
+     * @param log the logger
+     */
+    void render(DependencyNode rootNode, EnforcerLogger log) {
+        try {
+            render(rootNode, log::debug);
+        } catch (IOException e) {
+            // never thrown by the logger
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     *
+     * @param rootNode the root node
+     * @param lineWriter the writer receiving the lines
+     * @throws IOException in case the writer throws it
+     */
+    void render(DependencyNode rootNode, LineWriter lineWriter) throws IOException {
+        numRenderedNodes = 0;
+        isTruncated = false;
+        Set<DependencyNode> visitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        // the stack contains the nodes still to render in the order in which they are rendered
+        Deque<Entry> stack = new ArrayDeque<>();
+        stack.push(new Entry(rootNode, 0));
+        StringBuilder line = new StringBuilder();
+        while (!stack.isEmpty()) {
+            Entry entry = stack.pop();
+            if (!visitedNodes.add(entry.node)) {
+                continue;
+            }
+            if (numRenderedNodes >= maxNodes) {
+                isTruncated = true;
+                lineWriter.writeLine("... (stopped after " + maxNodes + " nodes)");
+                return;
+            }
+            indent(line, entry.depth).append(entry.node.getArtifact());
+            if (entry.node.getDependency() != null) {
+                line.append(" (").append(entry.node.getDependency().getScope()).append(")");
+            }
+            lineWriter.writeLine(line);
+            numRenderedNodes++;
+            List<DependencyNode> children = entry.node.getChildren();
+            if (children.isEmpty()) {
+                continue;
+            }
+            if (entry.depth >= maxDepth) {
+                isTruncated = true;
+                lineWriter.writeLine(indent(line, entry.depth + 1).append("... (").append(children.size()).append(" children below depth ").append(maxDepth).append(" omitted)"));
+                continue;
+            }
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new Entry(children.get(i), entry.depth + 1));
+            }
+        }
+    }
+
+    private static StringBuilder indent(StringBuilder line, int depth) {
+        line.setLength(0);
+        for (int i = 0; i < depth; i++) {
+            line.append(INDENT);
+        }
+        return line;
+    }
+
+    /**
+     *
+     * @return the number of nodes rendered by the last call of one of the render methods
+     */
+    int getNumRenderedNodes() {
+        return numRenderedNodes;
+    }
+
+    /**
+     *
+     * @return {@code true} in case the last rendered tree was cut off due to the depth or node limit
+     */
+    boolean isTruncated() {
+        return isTruncated;
+    }
+
+    private static final class Entry {
+        private final DependencyNode node;
+        private final int depth;
+
+        Entry(DependencyNode node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+
+/**
+ * Excludes all dependencies matching at least one of the given {@link ExcludesMatcher}s (on all levels).
+ * In contrast to the {@link org.eclipse.aether.util.graph.selector.ExclusionDependencySelector} the cost of selecting a dependency
+ * does not depend on the number of patterns and deriving a child selector is free.
+ */
+final class ExcludesDependencySelector implements DependencySelector {
+
+    private final List<ExcludesMatcher> matchers;
+    private final LongAdder numExcludedDependencies;
+
+    ExcludesDependencySelector(List<ExcludesMatcher> matchers) {
+        this.matchers = Collections.unmodifiableList(matchers);
+        this.numExcludedDependencies = new LongAdder();
+    }
+
+    /**
+     * 
+     * @return the number of dependencies (edges) which have been excluded by this selector so far
+     */
+    long getNumExcludedDependencies() {
+        return numExcludedDependencies.sum();
+    }
+
+    @Override
+    public boolean selectDependency(Dependency dependency) {
+        for (ExcludesMatcher matcher : matchers) {
+            if (matcher.matches(dependency.getArtifact())) {
+                numExcludedDependencies.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        return matchers.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return matchers.equals(((ExcludesDependencySelector) obj).matchers);
+    }
+}
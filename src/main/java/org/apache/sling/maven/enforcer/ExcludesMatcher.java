@@ -0,0 +1,250 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * Matches artifacts against a set of exclude patterns in the format {@code <groupId>[:<artifactId>[:<extension>[:<classifier>]]]}
+ * where each part may be the wildcard {@code *} (omitted parts are wildcards as well).
+ * <p>
+ * The patterns are compiled into a trie with one level per coordinate part. Each trie node has a hash map for the exact values
+ * and a separate child for the wildcard, so that matching an artifact takes at most 16 hash lookups, independent of the number of patterns.
+ */
+final class ExcludesMatcher {
+
+    private static final String WILDCARD = "*";
+    private static final int NUM_PARTS = 4;
+
+    /** all patterns loaded via {@link #load(String, File, ClassLoader)}, keyed by location */
+    private static final ConcurrentMap<String, CachedMatcher> LOADED_MATCHERS = new ConcurrentHashMap<>();
+
+    private final SortedSet<String> patterns;
+    private final Node root;
+
+    private ExcludesMatcher(SortedSet<String> patterns, Node root) {
+        this.patterns = patterns;
+        this.root = root;
+    }
+
+    /**
+     *
+     * @param patterns the patterns in the format {@code <groupId>[:<artifactId>[:<extension>[:<classifier>]]]}
+     * @return the compiled matcher
+     * @throws IllegalArgumentException in case of an invalid pattern
+     */
+    static ExcludesMatcher compile(Collection<String> patterns) {
+        SortedSet<String> normalizedPatterns = new TreeSet<>();
+        Node root = new Node();
+        for (String pattern : patterns) {
+            String[] parts = split(pattern);
+            normalizedPatterns.add(String.join(":", parts));
+            Node node = root;
+            for (String part : parts) {
+                node = node.getOrCreateChild(part);
+            }
+            node.isTerminal = true;
+        }
+        return new ExcludesMatcher(Collections.unmodifiableSortedSet(normalizedPatterns), root);
+    }
+
+    /**
+     *
+     * @param pattern string in the format {@code <groupId>[:<artifactId>[:<extension>[:<classifier>]]]}
+     * @return the four parts of the pattern (with wildcards for the omitted ones)
+     */
+    private static String[] split(String pattern) {
+        String[] parts = pattern.trim().split(":");
+        if (parts.length > NUM_PARTS) {
+            throw new IllegalArgumentException("Pattern must contain at most three colons, but contains " + (parts.length - 1) + ": " + pattern);
+        }
+        String[] allParts = new String[NUM_PARTS];
+        for (int i = 0; i < NUM_PARTS; i++) {
+            allParts[i] = i < parts.length && !parts[i].isEmpty() ? parts[i] : WILDCARD;
+        }
+        return allParts;
+    }
+
+    /**
+     *
+     * @param artifact the artifact
+     * @return {@code true} in case the artifact matches at least one of the patterns
+     */
+    boolean matches(Artifact artifact) {
+        return matches(root, 0, artifact);
+    }
+
+    private static boolean matches(Node node, int level, Artifact artifact) {
+        if (level == NUM_PARTS) {
+            return node.isTerminal;
+        }
+        Node exactChild = node.exactChildren.isEmpty() ? null : node.exactChildren.get(getPart(artifact, level));
+        if (exactChild != null && matches(exactChild, level + 1, artifact)) {
+            return true;
+        }
+        return node.wildcardChild != null && matches(node.wildcardChild, level + 1, artifact);
+    }
+
+    private static String getPart(Artifact artifact, int level) {
+        switch (level) {
+            case 0:
+                return artifact.getGroupId();
+            case 1:
+                return artifact.getArtifactId();
+            case 2:
+                return artifact.getExtension();
+            default:
+                return Objects.toString(artifact.getClassifier(), "");
+        }
+    }
+
+    boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     *
+     * @return the normalized patterns (i.e. always with four parts) in alphabetical order
+     */
+    SortedSet<String> getPatterns() {
+        return patterns;
+    }
+
+    @Override
+    public int hashCode() {
+        return patterns.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return patterns.equals(((ExcludesMatcher) obj).patterns);
+    }
+
+    @Override
+    public String toString() {
+        return "ExcludesMatcher " + patterns;
+    }
+
+    /**
+     * Loads the patterns from a file or classpath resource with one pattern per line.
+     * Empty lines and lines starting with {@code #} are ignored.
+     * The compiled matcher is cached for the lifetime of the JVM, files are only parsed again once they have been modified.
+     *
+     * @param location the path of the file (absolute or relative to the given base directory) or the name of the classpath resource
+     * @param baseDirectory the base directory for relative paths
+     * @param classLoader the class loader used for loading classpath resources
+     * @return the compiled matcher
+     * @throws IOException in case neither a file nor a classpath resource exists at the given location or it could not be read
+     */
+    static ExcludesMatcher load(String location, File baseDirectory, ClassLoader classLoader) throws IOException {
+        File file = new File(location);
+        if (!file.isAbsolute()) {
+            file = new File(baseDirectory, location);
+        }
+        final String key;
+        final URL url;
+        final long version;
+        if (file.isFile()) {
+            key = file.getAbsolutePath();
+            url = file.toURI().toURL();
+            // detect modifications in long running JVMs
+            version = file.lastModified() ^ (file.length() << 32);
+        } else {
+            url = classLoader.getResource(location.startsWith("/") ? location.substring(1) : location);
+            if (url == null) {
+                throw new IOException("Could not find excludes file or classpath resource " + location);
+            }
+            key = url.toExternalForm();
+            version = 0;
+        }
+        CachedMatcher cachedMatcher = LOADED_MATCHERS.get(key);
+        if (cachedMatcher == null || cachedMatcher.version != version) {
+            cachedMatcher = new CachedMatcher(version, compile(readPatterns(url)));
+            LOADED_MATCHERS.put(key, cachedMatcher);
+        }
+        return cachedMatcher.matcher;
+    }
+
+    private static List<String> readPatterns(URL url) throws IOException {
+        List<String> patterns = new ArrayList<>();
+        try (InputStream input = url.openStream();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    patterns.add(line);
+                }
+            }
+        }
+        return patterns;
+    }
+
+    private static final class CachedMatcher {
+        private final long version;
+        private final ExcludesMatcher matcher;
+
+        CachedMatcher(long version, ExcludesMatcher matcher) {
+            this.version = version;
+            this.matcher = matcher;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> exactChildren = new HashMap<>(2);
+        private Node wildcardChild;
+        private boolean isTerminal;
+
+        Node getOrCreateChild(String part) {
+            if (WILDCARD.equals(part)) {
+                if (wildcardChild == null) {
+                    wildcardChild = new Node();
+                }
+                return wildcardChild;
+            }
+            return exactChildren.computeIfAbsent(part, k -> new Node());
+        }
+    }
+}
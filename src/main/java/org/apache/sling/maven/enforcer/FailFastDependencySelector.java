@@ -0,0 +1,200 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.apache.maven.shared.utils.logging.MessageBuilder;
+import org.apache.maven.shared.utils.logging.MessageUtils;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+
+/**
+ * Checks the dependencies against the runtime classpath while they are being collected and cancels the collection
+ * (by throwing a {@link ViolationLimitReachedException}) once a given number of distinct missing dependencies has been found.
+ * <p>
+ * Only dependencies for which there is no runtime dependency with the same groupId, artifactId, extension and classifier are considered
+ * (independent of the version), as the versions are neither managed nor mediated yet at this point.
+ * For the same reason the violations are only candidates: a dependency which is only reachable via a version losing the conflict resolution
+ * is not part of the resolved graph (and would not be reported by a complete check). Therefore they are reported as unverified.
+ * It must be the last selector of an {@link org.eclipse.aether.util.graph.selector.AndDependencySelector} to only see
+ * the dependencies selected by all other selectors. Instances are never equal to each other, i.e. subtrees collected with this selector
+ * must not be shared.
+ */
+final class FailFastDependencySelector implements DependencySelector {
+
+    private final Violations violations;
+    /** the path from the first level (inclusive) to the current level (exclusive), {@code null} for the first and root level */
+    private final PathElement path;
+    private final boolean isRoot;
+
+    /**
+     *
+     * @param runtimeArtifactsIndex the runtime classpath
+     * @param maxViolations the number of distinct missing dependencies after which to cancel the collection
+     */
+    FailFastDependencySelector(RuntimeArtifactsIndex runtimeArtifactsIndex, int maxViolations) {
+        this(new Violations(runtimeArtifactsIndex, Math.max(1, maxViolations)), null, true);
+    }
+
+    private FailFastDependencySelector(Violations violations, PathElement path, boolean isRoot) {
+        this.violations = violations;
+        this.path = path;
+        this.isRoot = isRoot;
+    }
+
+    @Override
+    public boolean selectDependency(Dependency dependency) {
+        violations.check(dependency, path);
+        return true;
+    }
+
+    @Override
+    public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+        if (isRoot) {
+            // the root (i.e. the project) is not part of the path
+            return new FailFastDependencySelector(violations, null, false);
+        }
+        return new FailFastDependencySelector(violations, new PathElement(context.getDependency(), path), false);
+    }
+
+    /**
+     *
+     * @return the number of distinct missing dependencies found so far
+     */
+    int getNumViolations() {
+        return violations.getNumViolations();
+    }
+
+    /**
+     * Emits all violations found so far (in the order in which they have been found).
+     * @param log the logger
+     * @param reportWriter the writer to which to write the violations as well (may be {@code null})
+     * @return the number of violations
+     * @throws IOException in case the report could not be written
+     */
+    int report(EnforcerLogger log, ViolationReportWriter reportWriter) throws IOException {
+        List<String> messages = violations.getMessages();
+        for (String message : messages) {
+            log.warnOrError(message);
+        }
+        if (reportWriter != null) {
+            for (ViolationReportWriter.Violation violation : violations.getViolations()) {
+                reportWriter.write(violation);
+            }
+        }
+        return messages.size();
+    }
+
+    /** Thrown from {@link FailFastDependencySelector#selectDependency(Dependency)} to cancel the collection */
+    static final class ViolationLimitReachedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ViolationLimitReachedException(int maxViolations) {
+            super("Cancelled dependency collection after finding " + maxViolations + " missing runtime dependencies", null, false, false);
+        }
+    }
+
+    /** The state shared by all derived selectors (which may be used from multiple threads) */
+    private static final class Violations {
+        private final RuntimeArtifactsIndex runtimeArtifactsIndex;
+        private final int maxViolations;
+        private final Map<String, String> messagesByKey;
+        private final Map<String, ViolationReportWriter.Violation> violationsByKey;
+
+        Violations(RuntimeArtifactsIndex runtimeArtifactsIndex, int maxViolations) {
+            this.runtimeArtifactsIndex = runtimeArtifactsIndex;
+            this.maxViolations = maxViolations;
+            this.messagesByKey = new LinkedHashMap<>();
+            this.violationsByKey = new LinkedHashMap<>();
+        }
+
+        void check(Dependency dependency, PathElement path) {
+            boolean isMissing = runtimeArtifactsIndex.get(dependency.getArtifact()).isEmpty();
+            synchronized (this) {
+                if (messagesByKey.size() >= maxViolations) {
+                    // cancel all other collections as well
+                    throw new ViolationLimitReachedException(maxViolations);
+                }
+                if (!isMissing) {
+                    return;
+                }
+                String key = RuntimeArtifactsIndex.key(dependency.getArtifact());
+                if (!messagesByKey.containsKey(key)) {
+                    List<String> intermediateArtifacts = getIntermediateArtifacts(path);
+                    messagesByKey.put(key, createMessage(dependency, intermediateArtifacts));
+                    violationsByKey.put(key, new ViolationReportWriter.Violation(dependency.getArtifact().toString(), dependency.getScope(),
+                            dependency.isOptional(), intermediateArtifacts, 0, Collections.emptyList(), true));
+                }
+                if (messagesByKey.size() >= maxViolations) {
+                    throw new ViolationLimitReachedException(maxViolations);
+                }
+            }
+        }
+
+        synchronized int getNumViolations() {
+            return messagesByKey.size();
+        }
+
+        synchronized List<String> getMessages() {
+            return new ArrayList<>(messagesByKey.values());
+        }
+
+        synchronized List<ViolationReportWriter.Violation> getViolations() {
+            return new ArrayList<>(violationsByKey.values());
+        }
+
+        private static List<String> getIntermediateArtifacts(PathElement path) {
+            List<String> intermediateArtifacts = new ArrayList<>();
+            for (PathElement element = path; element != null; element = element.parent) {
+                intermediateArtifacts.add(element.dependency.getArtifact().toString());
+            }
+            Collections.reverse(intermediateArtifacts);
+            return intermediateArtifacts;
+        }
+
+        private static String createMessage(Dependency dependency, List<String> intermediateArtifacts) {
+            MessageBuilder msgBuilder = MessageUtils.buffer();
+            msgBuilder.a("Dependency ").strong(dependency);
+            if (!intermediateArtifacts.isEmpty()) {
+                msgBuilder.mojo(" via " + String.join(" -> ", intermediateArtifacts));
+            }
+            return msgBuilder.a(" not found as runtime dependency" + ViolationReportWriter.UNVERIFIED_SUFFIX + "!").toString();
+        }
+    }
+
+    /** Immutable linked list sharing the prefixes of all paths */
+    private static final class PathElement {
+        private final Dependency dependency;
+        private final PathElement parent;
+
+        PathElement(Dependency dependency, PathElement parent) {
+            this.dependency = dependency;
+            this.parent = parent;
+        }
+    }
+}
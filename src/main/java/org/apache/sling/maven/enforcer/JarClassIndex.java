@@ -0,0 +1,324 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The names of all classes contained in a JAR file (or class directory).
+ * <p>
+ * For JAR files only the ZIP central directory is read (via a memory-mapped buffer), i.e. no entry is inflated.
+ * The indices are cached for the lifetime of the JVM, keyed by the checksum of the central directory (so that copies of the same JAR, e.g.
+ * in the local repository and a reactor module's target directory, share one index). Files are only read again once they have been modified.
+ * The cache is evicted in least-recently-used order once the total number of cached class names exceeds {@link #MAX_CACHED_CLASS_NAMES}.
+ */
+final class JarClassIndex {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /** the maximum number of class names kept by {@link #CACHE} (roughly 20 MB) */
+    static final int MAX_CACHED_CLASS_NAMES = 200_000;
+
+    private static final Cache CACHE = new Cache(MAX_CACHED_CLASS_NAMES);
+
+    private final String checksum;
+    private final Set<String> classNames;
+
+    private JarClassIndex(String checksum, Set<String> classNames) {
+        this.checksum = checksum;
+        this.classNames = classNames;
+    }
+
+    /**
+     *
+     * @param file a JAR file or a directory containing class files
+     * @return the index of the given file (cached for JAR files)
+     * @throws IOException in case the file cannot be read or is no valid ZIP file
+     */
+    static JarClassIndex of(File file) throws IOException {
+        return of(file, CACHE);
+    }
+
+    /**
+     *
+     * @param file a JAR file or a directory containing class files
+     * @param cache the cache for the indices of JAR files
+     * @return the index of the given file (cached for JAR files)
+     * @throws IOException in case the file cannot be read or is no valid ZIP file
+     */
+    static JarClassIndex of(File file, Cache cache) throws IOException {
+        if (file.isDirectory()) {
+            return ofDirectory(file.toPath());
+        }
+        String key = file.getAbsolutePath();
+        // detect modifications in long running JVMs
+        long version = file.lastModified() ^ (file.length() << 32);
+        JarClassIndex index = cache.getByPath(key, version);
+        if (index == null) {
+            index = ofJar(file.toPath(), cache);
+            cache.putByPath(key, version, index);
+        }
+        return index;
+    }
+
+    private static JarClassIndex ofDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            Set<String> classNames = files.map(f -> directory.relativize(f).toString().replace(File.separatorChar, '/'))
+                .filter(JarClassIndex::isClassEntry)
+                .map(JarClassIndex::toClassName)
+                .collect(Collectors.toSet());
+            return new JarClassIndex(null, Collections.unmodifiableSet(classNames));
+        }
+    }
+
+    private static JarClassIndex ofJar(Path jar, Cache cache) throws IOException {
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // the end of central directory record is at the very end, only followed by a comment of variable length
+            long tailStart = Math.max(0, size - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_LENGTH - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE);
+            MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, tailStart, size - tailStart);
+            tail.order(ByteOrder.LITTLE_ENDIAN);
+            int endPosition = findEndOfCentralDirectory(tail);
+            if (endPosition < 0) {
+                throw new IOException("No ZIP end of central directory record found in " + jar);
+            }
+            long numEntries = Short.toUnsignedLong(tail.getShort(endPosition + 10));
+            long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(endPosition + 12));
+            long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(endPosition + 16));
+            if (numEntries == 0xFFFF || centralDirectorySize == 0xFFFFFFFFL || centralDirectoryOffset == 0xFFFFFFFFL) {
+                int locatorPosition = endPosition - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+                if (locatorPosition >= 0 && tail.getInt(locatorPosition) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+                    long zip64EndOffset = tail.getLong(locatorPosition + 8);
+                    ByteBuffer zip64End = channel.map(FileChannel.MapMode.READ_ONLY, zip64EndOffset, 56).order(ByteOrder.LITTLE_ENDIAN);
+                    if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                        throw new IOException("Invalid ZIP64 end of central directory record in " + jar);
+                    }
+                    numEntries = zip64End.getLong(32);
+                    centralDirectorySize = zip64End.getLong(40);
+                    centralDirectoryOffset = zip64End.getLong(48);
+                }
+            }
+            if (centralDirectoryOffset + centralDirectorySize > size || centralDirectorySize > Integer.MAX_VALUE) {
+                throw new IOException("Invalid ZIP central directory in " + jar);
+            }
+            MappedByteBuffer centralDirectory = channel.map(FileChannel.MapMode.READ_ONLY, centralDirectoryOffset, centralDirectorySize);
+            centralDirectory.order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            crc.update(centralDirectory.duplicate());
+            String checksum = Long.toHexString(crc.getValue()) + "-" + centralDirectorySize;
+            JarClassIndex index = cache.getByChecksum(checksum);
+            if (index == null) {
+                index = new JarClassIndex(checksum, Collections.unmodifiableSet(readClassNames(centralDirectory, numEntries, jar)));
+                cache.putByChecksum(index);
+            }
+            return index;
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static Set<String> readClassNames(ByteBuffer centralDirectory, long numEntries, Path jar) throws IOException {
+        Set<String> classNames = new HashSet<>();
+        byte[] nameBytes = new byte[256];
+        int position = 0;
+        for (long i = 0; i < numEntries; i++) {
+            if (position + CENTRAL_DIRECTORY_HEADER_SIZE > centralDirectory.limit()
+                    || centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                throw new IOException("Invalid ZIP central directory entry at offset " + position + " in " + jar);
+            }
+            int nameLength = Short.toUnsignedInt(centralDirectory.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(centralDirectory.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(centralDirectory.getShort(position + 32));
+            if (nameLength > nameBytes.length) {
+                nameBytes = new byte[nameLength];
+            }
+            ByteBuffer nameBuffer = centralDirectory.duplicate();
+            nameBuffer.position(position + CENTRAL_DIRECTORY_HEADER_SIZE);
+            nameBuffer.get(nameBytes, 0, nameLength);
+            // the JDK and all common build tools write the names UTF-8 encoded
+            String name = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+            if (isClassEntry(name)) {
+                classNames.add(toClassName(name));
+            }
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return classNames;
+    }
+
+    private static boolean isClassEntry(String name) {
+        return name.endsWith(CLASS_SUFFIX) && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+    }
+
+    /**
+     *
+     * @param entryName the name of the ZIP entry
+     * @return the internal class name (i.e. with slashes), without the multi-release prefix
+     */
+    private static String toClassName(String entryName) {
+        String name = entryName;
+        if (name.startsWith(VERSIONS_PREFIX)) {
+            int versionEnd = name.indexOf('/', VERSIONS_PREFIX.length());
+            name = versionEnd > 0 ? name.substring(versionEnd + 1) : name;
+        }
+        return name.substring(0, name.length() - CLASS_SUFFIX.length());
+    }
+
+    /**
+     *
+     * @param internalClassName the class name in internal form (e.g. {@code java/lang/String})
+     * @return {@code true} in case the JAR contains the class
+     */
+    boolean contains(String internalClassName) {
+        return classNames.contains(internalClassName);
+    }
+
+    /**
+     *
+     * @return the names of all classes in internal form
+     */
+    Set<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     *
+     * @return the checksum of the ZIP central directory or {@code null} for directories
+     */
+    String getChecksum() {
+        return checksum;
+    }
+
+    int size() {
+        return classNames.size();
+    }
+
+    /**
+     * The indices of JAR files keyed by path and by checksum, each evicted in least-recently-used order once the total number
+     * of class names of its indices exceeds a limit.
+     */
+    static final class Cache {
+        private final int maxClassNames;
+        private final LinkedHashMap<String, CachedIndex> indicesByPath;
+        private final LinkedHashMap<String, CachedIndex> indicesByChecksum;
+        private int numClassNamesByPath;
+        private int numClassNamesByChecksum;
+
+        /**
+         * 
+         * @param maxClassNames the maximum number of class names to keep in each of the maps
+         */
+        Cache(int maxClassNames) {
+            this.maxClassNames = maxClassNames;
+            this.indicesByPath = new LinkedHashMap<>(16, 0.75f, true);
+            this.indicesByChecksum = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        synchronized JarClassIndex getByPath(String path, long version) {
+            CachedIndex cachedIndex = indicesByPath.get(path);
+            return cachedIndex != null && cachedIndex.version == version ? cachedIndex.index : null;
+        }
+
+        synchronized void putByPath(String path, long version, JarClassIndex index) {
+            numClassNamesByPath = put(indicesByPath, path, new CachedIndex(version, index), numClassNamesByPath);
+        }
+
+        synchronized JarClassIndex getByChecksum(String checksum) {
+            CachedIndex cachedIndex = indicesByChecksum.get(checksum);
+            return cachedIndex != null ? cachedIndex.index : null;
+        }
+
+        synchronized void putByChecksum(JarClassIndex index) {
+            numClassNamesByChecksum = put(indicesByChecksum, index.checksum, new CachedIndex(0, index), numClassNamesByChecksum);
+        }
+
+        /**
+         * 
+         * @return the number of class names of all indices cached by path
+         */
+        synchronized int getNumClassNames() {
+            return numClassNamesByPath;
+        }
+
+        /**
+         * 
+         * @return the total number of class names in the given map after adding the given index and evicting the least recently used ones
+         */
+        private int put(Map<String, CachedIndex> indices, String key, CachedIndex cachedIndex, int numClassNames) {
+            if (cachedIndex.index.size() > maxClassNames) {
+                return numClassNames;
+            }
+            CachedIndex oldIndex = indices.put(key, cachedIndex);
+            if (oldIndex != null) {
+                numClassNames -= oldIndex.index.size();
+            }
+            numClassNames += cachedIndex.index.size();
+            Iterator<CachedIndex> iterator = indices.values().iterator();
+            while (numClassNames > maxClassNames && iterator.hasNext()) {
+                numClassNames -= iterator.next().index.size();
+                iterator.remove();
+            }
+            return numClassNames;
+        }
+    }
+
+    private static final class CachedIndex {
+        private final long version;
+        private final JarClassIndex index;
+
+        CachedIndex(long version, JarClassIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Helpers for writing JSON without depending on a JSON library.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     *
+     * @param value the string value
+     * @return the quoted and escaped JSON string
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     *
+     * @param values the string values
+     * @return a JSON array containing the quoted values
+     */
+    static String array(Collection<String> values) {
+        StringBuilder array = new StringBuilder("[");
+        String separator = "";
+        for (String value : values) {
+            array.append(separator).append(quote(value));
+            separator = ", ";
+        }
+        return array.append(']').toString();
+    }
+}
@@ -0,0 +1,559 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+import org.apache.maven.shared.utils.logging.MessageBuilder;
+import org.apache.maven.shared.utils.logging.MessageUtils;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.DependencyVisitor;
+
+/**
+ * Checks all nodes of a dependency graph against the runtime classpath.
+ * <p>
+ * The check runs over a {@link CompactDependencyGraph}, which is either passed to {@link #check(CompactDependencyGraph)} or built
+ * while this visitor is visiting the {@link DependencyNode}s (the check is then executed once the root node is left).
+ * The graph is treated as a DAG (nodes shared by multiple parents are only entered once, edges closing a cycle are ignored).
+ * The incoming edges of every node form a compact shared-prefix structure of all paths reaching the node, from which the number of paths
+ * and the shortest path are derived.
+ * Each artifact coordinate is checked exactly once and each missing artifact is reported once (with the shortest path, the total number of paths
+ * and at most {@code maxReportedPaths} paths). The check stops once {@code maxViolations} missing artifacts have been found.
+ * Missing artifacts can optionally be verified with a {@link ClassLevelChecker}.
+ */
+final class MissingArtifactsDependencyVisitor implements DependencyVisitor {
+
+    private static final int MAX_REPORTED_CLASSES = 5;
+
+    private final RuntimeArtifactsIndex runtimeArtifactsIndex;
+    private final VersionCompatibilityChecker versionCompatibilityChecker;
+    private final EnforcerLogger log;
+    private final int maxReportedPaths;
+    private final int maxViolations;
+    private final ViolationReportWriter reportWriter;
+    private final ClassLevelChecker classLevelChecker;
+    private final ReactorCache.ArtifactVerdictCache artifactVerdictCache;
+    private CompactDependencyGraph.Builder graphBuilder;
+    private int numMissingArtifacts;
+    private int numCheckedArtifacts;
+    private int numIgnoredArtifacts;
+    private int numArtifactVerdictCacheHits;
+    private boolean isPartial;
+    private int numVisitedNodes;
+    private int numDistinctArtifacts;
+    private long totalNanos;
+    private long reportingNanos;
+
+    /**
+     *
+     * @param runtimeArtifactsIndex the runtime classpath
+     * @param versionCompatibilityChecker the checker for the versions
+     * @param log the logger to which to emit the missing artifacts
+     * @param maxReportedPaths the maximum number of paths to print per missing artifact
+     * @param maxViolations the number of missing artifacts after which to stop the check (0 for no limit)
+     */
+    MissingArtifactsDependencyVisitor(RuntimeArtifactsIndex runtimeArtifactsIndex, VersionCompatibilityChecker versionCompatibilityChecker,
+            EnforcerLogger log, int maxReportedPaths, int maxViolations) {
+        this(runtimeArtifactsIndex, versionCompatibilityChecker, log, maxReportedPaths, maxViolations, null, null);
+    }
+
+    /**
+     *
+     * @param runtimeArtifactsIndex the runtime classpath
+     * @param versionCompatibilityChecker the checker for the versions
+     * @param log the logger to which to emit the missing artifacts
+     * @param maxReportedPaths the maximum number of paths to print per missing artifact
+     * @param maxViolations the number of missing artifacts after which to stop the check (0 for no limit)
+     * @param reportWriter the writer to which to stream the missing artifacts as soon as they are found (may be {@code null})
+     * @param classLevelChecker the checker for ignoring missing artifacts which are not needed at class level (may be {@code null})
+     */
+    MissingArtifactsDependencyVisitor(RuntimeArtifactsIndex runtimeArtifactsIndex, VersionCompatibilityChecker versionCompatibilityChecker,
+            EnforcerLogger log, int maxReportedPaths, int maxViolations, ViolationReportWriter reportWriter, ClassLevelChecker classLevelChecker) {
+        this(runtimeArtifactsIndex, versionCompatibilityChecker, log, maxReportedPaths, maxViolations, reportWriter, classLevelChecker, null);
+    }
+
+    /**
+     *
+     * @param runtimeArtifactsIndex the runtime classpath
+     * @param versionCompatibilityChecker the checker for the versions
+     * @param log the logger to which to emit the missing artifacts
+     * @param maxReportedPaths the maximum number of paths to print per missing artifact
+     * @param maxViolations the number of missing artifacts after which to stop the check (0 for no limit)
+     * @param reportWriter the writer to which to stream the missing artifacts as soon as they are found (may be {@code null})
+     * @param classLevelChecker the checker for ignoring missing artifacts which are not needed at class level (may be {@code null})
+     * @param artifactVerdictCache the verdicts for the given runtime classpath and checker shared with other executions (may be {@code null})
+     */
+    MissingArtifactsDependencyVisitor(RuntimeArtifactsIndex runtimeArtifactsIndex, VersionCompatibilityChecker versionCompatibilityChecker,
+            EnforcerLogger log, int maxReportedPaths, int maxViolations, ViolationReportWriter reportWriter, ClassLevelChecker classLevelChecker,
+            ReactorCache.ArtifactVerdictCache artifactVerdictCache) {
+        this.reportWriter = reportWriter;
+        this.classLevelChecker = classLevelChecker;
+        this.artifactVerdictCache = artifactVerdictCache;
+        this.runtimeArtifactsIndex = runtimeArtifactsIndex;
+        this.versionCompatibilityChecker = versionCompatibilityChecker;
+        this.log = log;
+        this.maxReportedPaths = Math.max(1, maxReportedPaths);
+        this.maxViolations = maxViolations;
+    }
+
+    @Override
+    public boolean visitEnter(DependencyNode dependencyNode) {
+        if (graphBuilder == null) {
+            graphBuilder = new CompactDependencyGraph.Builder();
+        }
+        return graphBuilder.visitEnter(dependencyNode);
+    }
+
+    @Override
+    public boolean visitLeave(DependencyNode dependencyNode) {
+        graphBuilder.visitLeave(dependencyNode);
+        if (graphBuilder.isComplete()) {
+            // the root node has been left
+            CompactDependencyGraph graph = graphBuilder.build();
+            graphBuilder = null;
+            check(graph);
+        }
+        return true;
+    }
+
+    /**
+     * Checks all nodes of the given graph and emits the missing ones.
+     * @param graph the graph
+     * @throws UncheckedIOException in case the report could not be written
+     */
+    void check(CompactDependencyGraph graph) {
+        long startNanos = System.nanoTime();
+        Paths paths = new Paths(graph);
+        numVisitedNodes = paths.numVisitedNodes;
+        checkAndReport(graph, paths);
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    public int getNumMissingArtifacts() {
+        return numMissingArtifacts;
+    }
+
+    /**
+     *
+     * @return {@code true} in case the check has been stopped after reaching the maximum number of violations (with unchecked artifacts left)
+     */
+    boolean isPartial() {
+        return isPartial;
+    }
+
+    /**
+     *
+     * @return the number of nodes which have been visited (i.e. the number of edges plus one)
+     */
+    int getNumVisitedNodes() {
+        return numVisitedNodes;
+    }
+
+    /**
+     *
+     * @return the number of distinct artifact coordinates in the graph (without the root node)
+     */
+    int getNumDistinctArtifacts() {
+        return numDistinctArtifacts;
+    }
+
+    /**
+     *
+     * @return the time spent for traversing, checking and reporting in nanoseconds
+     */
+    long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     *
+     * @return the time spent for formatting and emitting the messages for missing artifacts in nanoseconds
+     */
+    long getReportingNanos() {
+        return reportingNanos;
+    }
+
+    /**
+     *
+     * @return the number of distinct artifact coordinates which have been checked
+     */
+    int getNumCheckedArtifacts() {
+        return numCheckedArtifacts;
+    }
+
+    /**
+     *
+     * @return the number of missing artifacts which have not been reported as they are not needed at class level
+     */
+    int getNumIgnoredArtifacts() {
+        return numIgnoredArtifacts;
+    }
+
+    /**
+     *
+     * @return the number of artifacts whose verdict has been taken from the shared cache
+     */
+    int getNumArtifactVerdictCacheHits() {
+        return numArtifactVerdictCacheHits;
+    }
+
+    private void checkAndReport(CompactDependencyGraph graph, Paths paths) {
+        // group by artifact coordinate in the order of first occurrence (skipping the root node)
+        int numNodes = graph.getNumNodes();
+        int[] numNodesByCoordinate = new int[graph.getNumCoordinates()];
+        CompactDependencyGraph.IntList coordinatesInOrder = new CompactDependencyGraph.IntList();
+        for (int node = 1; node < numNodes; node++) {
+            if (numNodesByCoordinate[graph.getCoordinateId(node)]++ == 0) {
+                coordinatesInOrder.add(graph.getCoordinateId(node));
+            }
+        }
+        int[] groupOffsets = new int[graph.getNumCoordinates()];
+        int offset = 0;
+        for (int i = 0; i < coordinatesInOrder.size(); i++) {
+            groupOffsets[coordinatesInOrder.get(i)] = offset;
+            offset += numNodesByCoordinate[coordinatesInOrder.get(i)];
+        }
+        int[] groupedNodes = new int[offset];
+        int[] nextIndex = groupOffsets.clone();
+        for (int node = 1; node < numNodes; node++) {
+            groupedNodes[nextIndex[graph.getCoordinateId(node)]++] = node;
+        }
+        numDistinctArtifacts = coordinatesInOrder.size();
+        for (int i = 0; i < coordinatesInOrder.size(); i++) {
+            if (maxViolations > 0 && numMissingArtifacts >= maxViolations) {
+                isPartial = true;
+                break;
+            }
+            int coordinate = coordinatesInOrder.get(i);
+            int[] nodes = Arrays.copyOfRange(groupedNodes, groupOffsets[coordinate], groupOffsets[coordinate] + numNodesByCoordinate[coordinate]);
+            Artifact artifact = graph.getArtifact(nodes[0]);
+            numCheckedArtifacts++;
+            try {
+                // the messages about incompatible versions are only emitted once it is clear that the artifact is not ignored
+                List<String> incompatibleVersionMessages = new ArrayList<>(0);
+                if (isCompatibleArtifactContained(artifact, incompatibleVersionMessages)) {
+                    incompatibleVersionMessages.forEach(log::warnOrError);
+                } else {
+                    List<String> unresolvableClasses = getUnresolvableClasses(artifact);
+                    if (unresolvableClasses != null && unresolvableClasses.isEmpty()) {
+                        numIgnoredArtifacts++;
+                        incompatibleVersionMessages.forEach(log::debug);
+                        log.debug("Ignoring missing dependency " + artifact + " as none of its classes is referenced by the project's classes");
+                        continue;
+                    }
+                    incompatibleVersionMessages.forEach(log::warnOrError);
+                    long reportingStart = System.nanoTime();
+                    reportMissingArtifact(graph, paths, nodes, unresolvableClasses);
+                    reportingNanos += System.nanoTime() - reportingStart;
+                    numMissingArtifacts++;
+                }
+            } catch (InvalidVersionSpecificationException e) {
+                log.error("Invalid version given for artifact " + artifact + ": " + e.getCause());
+            }
+        }
+    }
+
+    private boolean isCompatibleArtifactContained(Artifact artifact, List<String> incompatibleVersionMessages) throws InvalidVersionSpecificationException {
+        if (artifactVerdictCache == null) {
+            return RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(artifact, runtimeArtifactsIndex, versionCompatibilityChecker, incompatibleVersionMessages);
+        }
+        ReactorCache.ArtifactVerdict verdict = artifactVerdictCache.get(artifact);
+        if (verdict != null) {
+            numArtifactVerdictCacheHits++;
+        } else {
+            List<String> messages = new ArrayList<>(0);
+            verdict = new ReactorCache.ArtifactVerdict(RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(
+                    artifact, runtimeArtifactsIndex, versionCompatibilityChecker, messages), messages);
+            artifactVerdictCache.put(artifact, verdict);
+        }
+        incompatibleVersionMessages.addAll(verdict.getIncompatibleVersionMessages());
+        return verdict.isContained();
+    }
+
+    /**
+     *
+     * @param artifact the missing artifact
+     * @return the classes of the artifact which are needed by the project or {@code null} in case this is unknown
+     */
+    private List<String> getUnresolvableClasses(Artifact artifact) {
+        if (classLevelChecker == null) {
+            return null;
+        }
+        try {
+            return classLevelChecker.getUnresolvableClasses(artifact);
+        } catch (IOException e) {
+            log.warn("Could not check the classes of " + artifact + ", reporting it as missing: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void reportMissingArtifact(CompactDependencyGraph graph, Paths paths, int[] nodes, List<String> unresolvableClasses) {
+        int shortest = nodes[0];
+        long numPaths = 0;
+        for (int node : nodes) {
+            if (paths.depths[node] < paths.depths[shortest]) {
+                shortest = node;
+            }
+            numPaths = saturatedAdd(numPaths, paths.numPaths[node]);
+        }
+        int[] shortestPath = paths.getShortestPath(shortest);
+        MessageBuilder msgBuilder = MessageUtils.buffer();
+        msgBuilder.a("Dependency ").strong(graph.getDependencyString(shortest)).mojo(dumpIntermediatePath(graph, shortestPath)).a(" not found as runtime dependency!");
+        if (numPaths > 1) {
+            msgBuilder.a(" Reachable via " + numPaths + " paths");
+            List<int[]> allPaths = new ArrayList<>();
+            for (int node : nodes) {
+                paths.collectPaths(node, new CompactDependencyGraph.IntList(), allPaths, maxReportedPaths);
+            }
+            // the shortest path has already been emitted
+            for (Iterator<int[]> iterator = allPaths.iterator(); iterator.hasNext();) {
+                if (Arrays.equals(iterator.next(), shortestPath)) {
+                    iterator.remove();
+                    break;
+                }
+            }
+            List<int[]> additionalPaths = allPaths.subList(0, Math.min(allPaths.size(), maxReportedPaths - 1));
+            if (additionalPaths.isEmpty()) {
+                msgBuilder.a(" (only the shortest one is shown).");
+            } else {
+                msgBuilder.a(", further ones:");
+                for (int[] path : additionalPaths) {
+                    msgBuilder.a(System.lineSeparator()).a("  ").mojo(dumpIntermediatePath(graph, path).trim());
+                }
+                long numOmittedPaths = numPaths - 1 - additionalPaths.size();
+                if (numOmittedPaths > 0) {
+                    msgBuilder.a(System.lineSeparator()).a("  ... and " + numOmittedPaths + " more");
+                }
+            }
+        }
+        if (unresolvableClasses != null) {
+            msgBuilder.a(" Classes referenced by the project: " + unresolvableClasses.stream().limit(MAX_REPORTED_CLASSES).collect(Collectors.joining(", "))
+                    + (unresolvableClasses.size() > MAX_REPORTED_CLASSES ? " and " + (unresolvableClasses.size() - MAX_REPORTED_CLASSES) + " more" : ""));
+        }
+        log.warnOrError(msgBuilder.toString());
+        if (reportWriter != null) {
+            List<String> intermediatePath = IntStream.of(shortestPath).skip(1).limit(Math.max(0, shortestPath.length - 2L))
+                    .mapToObj(graph::getCoordinates).collect(Collectors.toList());
+            List<String> runtimeVersions = runtimeArtifactsIndex.get(graph.getArtifact(shortest)).stream()
+                    .map(e -> e.getArtifact().getVersion()).collect(Collectors.toList());
+            try {
+                reportWriter.write(new ViolationReportWriter.Violation(graph.getCoordinates(shortest), graph.getScope(shortest), graph.isOptional(shortest),
+                        intermediatePath, numPaths, runtimeVersions));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param graph the graph
+     * @param path the path from the root node to the node (both inclusive)
+     * @return the string representation of the intermediate nodes
+     */
+    private static String dumpIntermediatePath(CompactDependencyGraph graph, int[] path) {
+        if (path.length <= 2) {
+            return "";
+        }
+        return " via " + IntStream.of(path).skip(1).limit(path.length - 2L)
+                .mapToObj(graph::getCoordinates)
+                .collect(Collectors.joining(" -> "));
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * The incoming edges (without the ones closing cycles), the number of paths and the shortest path of every node.
+     * The incoming edges of every node are kept as linked list in the order in which they are traversed.
+     */
+    private static final class Paths {
+        private final int[] firstParentEdge;
+        private final int[] lastParentEdge;
+        private final int[] edgeParents;
+        private final int[] nextParentEdge;
+        private int numParentEdges;
+        private final long[] numPaths;
+        private final int[] depths;
+        private final int[] shortestParents;
+        private int numVisitedNodes;
+
+        Paths(CompactDependencyGraph graph) {
+            int numNodes = graph.getNumNodes();
+            firstParentEdge = new int[numNodes];
+            Arrays.fill(firstParentEdge, -1);
+            lastParentEdge = new int[numNodes];
+            edgeParents = new int[graph.getNumEdges()];
+            nextParentEdge = new int[graph.getNumEdges()];
+            numPaths = new long[numNodes];
+            depths = new int[numNodes];
+            shortestParents = new int[numNodes];
+            int[] postOrder = traverse(graph);
+            // the reverse post order is a topological order of the graph without the edges closing cycles
+            for (int i = postOrder.length - 1; i >= 0; i--) {
+                computePaths(postOrder[i]);
+            }
+        }
+
+        /**
+         * Traverses the graph depth-first (iteratively) and collects the incoming edges.
+         * @return the nodes in post-order
+         */
+        private int[] traverse(CompactDependencyGraph graph) {
+            int numNodes = graph.getNumNodes();
+            int[] postOrder = new int[numNodes];
+            int numPostOrderNodes = 0;
+            BitSet enteredNodes = new BitSet(numNodes);
+            BitSet nodesOnStack = new BitSet(numNodes);
+            int[] stackNodes = new int[numNodes];
+            int[] stackChildIndices = new int[numNodes];
+            int stackSize = 0;
+            if (numNodes == 0) {
+                return postOrder;
+            }
+            stackNodes[stackSize] = 0;
+            stackChildIndices[stackSize++] = graph.getFirstChildIndex(0);
+            enteredNodes.set(0);
+            nodesOnStack.set(0);
+            numVisitedNodes = 1;
+            while (stackSize > 0) {
+                int node = stackNodes[stackSize - 1];
+                int childIndex = stackChildIndices[stackSize - 1];
+                if (childIndex < graph.getEndChildIndex(node)) {
+                    stackChildIndices[stackSize - 1]++;
+                    int child = graph.getChild(childIndex);
+                    numVisitedNodes++;
+                    if (enteredNodes.get(child)) {
+                        // ignore edges closing a cycle
+                        if (!nodesOnStack.get(child)) {
+                            addParent(child, node);
+                        }
+                        continue;
+                    }
+                    addParent(child, node);
+                    enteredNodes.set(child);
+                    nodesOnStack.set(child);
+                    stackNodes[stackSize] = child;
+                    stackChildIndices[stackSize++] = graph.getFirstChildIndex(child);
+                } else {
+                    stackSize--;
+                    nodesOnStack.clear(node);
+                    postOrder[numPostOrderNodes++] = node;
+                }
+            }
+            return postOrder;
+        }
+
+        private void addParent(int node, int parent) {
+            int edge = numParentEdges++;
+            edgeParents[edge] = parent;
+            nextParentEdge[edge] = -1;
+            if (firstParentEdge[node] < 0) {
+                firstParentEdge[node] = edge;
+            } else {
+                nextParentEdge[lastParentEdge[node]] = edge;
+            }
+            lastParentEdge[node] = edge;
+        }
+
+        /**
+         * Calculates the number of paths and the shortest path, requires all parents to be calculated already.
+         */
+        private void computePaths(int node) {
+            shortestParents[node] = -1;
+            if (firstParentEdge[node] < 0) {
+                numPaths[node] = 1;
+                depths[node] = 0;
+                return;
+            }
+            long nodeNumPaths = 0;
+            int shortestParent = -1;
+            for (int edge = firstParentEdge[node]; edge >= 0; edge = nextParentEdge[edge]) {
+                int parent = edgeParents[edge];
+                nodeNumPaths = saturatedAdd(nodeNumPaths, numPaths[parent]);
+                // prefer the earliest parent (in pre-order, i.e. with the lowest id) among the ones with the same depth
+                if (shortestParent < 0 || depths[parent] < depths[shortestParent]
+                        || (depths[parent] == depths[shortestParent] && parent < shortestParent)) {
+                    shortestParent = parent;
+                }
+            }
+            numPaths[node] = nodeNumPaths;
+            shortestParents[node] = shortestParent;
+            depths[node] = depths[shortestParent] + 1;
+        }
+
+        /**
+         *
+         * @return the shortest path from the root node to the given node (both inclusive)
+         */
+        int[] getShortestPath(int node) {
+            int[] path = new int[depths[node] + 1];
+            for (int i = path.length - 1; node >= 0; node = shortestParents[node], i--) {
+                path[i] = node;
+            }
+            return path;
+        }
+
+        /**
+         * Collects the paths from the root node to the given node (both inclusive).
+         * @param node the node
+         * @param suffix the path from the node to the originally requested node (in reverse order)
+         * @param paths the list to which to add the paths
+         * @param maxPaths the maximum number of paths to collect
+         */
+        void collectPaths(int node, CompactDependencyGraph.IntList suffix, List<int[]> paths, int maxPaths) {
+            if (paths.size() >= maxPaths) {
+                return;
+            }
+            suffix.add(node);
+            if (firstParentEdge[node] < 0) {
+                int[] path = suffix.toArray();
+                reverse(path);
+                paths.add(path);
+            } else {
+                for (int edge = firstParentEdge[node]; edge >= 0; edge = nextParentEdge[edge]) {
+                    collectPaths(edgeParents[edge], suffix, paths, maxPaths);
+                }
+            }
+            suffix.removeLast();
+        }
+
+        private static void reverse(int[] values) {
+            for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+                int value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+    }
+}
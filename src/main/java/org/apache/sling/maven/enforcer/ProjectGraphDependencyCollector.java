@@ -0,0 +1,284 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.RepositoryUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+
+/**
+ * Builds the dependency graph of a project on top of the graph Maven already resolved for the project.
+ * <p>
+ * Maven does not retain its dependency graph, only the resulting artifacts together with their dependency trails
+ * (see {@link org.apache.maven.artifact.Artifact#getDependencyTrail()}). Those are used to reconstruct Maven's graph.
+ * It is walked top-down with the selector, manager and traverser of the given session: nodes which are part of Maven's graph
+ * are taken over, all other selected dependencies (mostly the transitive provided and optional ones which Maven filtered out)
+ * are collected via a grouped {@link SubtreeDependencyCollector.Batch}, i.e. with as few collect requests as possible.
+ * The session's graph transformer is applied to the resulting graph afterwards.
+ * <p>
+ * The descriptors of the nodes taken over are retrieved with a single collect request which does not go beyond the first level.
+ * In contrast to reading them one by one this uses the descriptor pool of the repository system which has been populated
+ * by Maven's own dependency collection already.
+ */
+final class ProjectGraphDependencyCollector {
+
+    private final RepositorySystem repoSystem;
+    private final RepositorySystemSession repoSession;
+    private final List<RemoteRepository> remoteRepositories;
+    private final SubtreeDependencyCollector subtreeCollector;
+    private final String projectId;
+    private final Map<String, Map<String, org.apache.maven.artifact.Artifact>> childrenByParentId;
+    private final List<Dependency> resolvedDependencies;
+    private int numReusedNodes;
+    private int numReadDescriptors;
+
+    /**
+     *
+     * @param repoSystem the repository system
+     * @param repoSession the session containing the selector, manager, traverser and transformer to use
+     * @param remoteRepositories the remote repositories
+     * @param subtreeCollector the collector for all subtrees which are not part of Maven's graph
+     * @param resolvedArtifacts the artifacts resolved by Maven for the project (including their dependency trails)
+     * @param projectId the id of the project's artifact (i.e. the first element of every dependency trail)
+     * @throws IllegalArgumentException in case Maven's graph cannot be reconstructed from the given artifacts
+     */
+    ProjectGraphDependencyCollector(RepositorySystem repoSystem, RepositorySystemSession repoSession, List<RemoteRepository> remoteRepositories,
+            SubtreeDependencyCollector subtreeCollector, Collection<org.apache.maven.artifact.Artifact> resolvedArtifacts, String projectId) {
+        this.repoSystem = repoSystem;
+        this.repoSession = repoSession;
+        this.remoteRepositories = remoteRepositories;
+        this.subtreeCollector = subtreeCollector;
+        this.projectId = projectId;
+        this.childrenByParentId = buildChildrenByParentId(resolvedArtifacts, projectId);
+        this.resolvedDependencies = new ArrayList<>(resolvedArtifacts.size());
+        for (org.apache.maven.artifact.Artifact resolvedArtifact : resolvedArtifacts) {
+            resolvedDependencies.add(new Dependency(RepositoryUtils.toArtifact(resolvedArtifact).setVersion(resolvedArtifact.getBaseVersion()), resolvedArtifact.getScope()));
+        }
+    }
+
+    /**
+     *
+     * @param resolvedArtifacts the artifacts resolved by Maven
+     * @param projectId the id of the project's artifact
+     * @return the children of every node of Maven's graph (keyed by the node's id) keyed by {@link RuntimeArtifactsIndex#key(Artifact)}
+     * @throws IllegalArgumentException in case of an artifact without (valid) dependency trail
+     */
+    static Map<String, Map<String, org.apache.maven.artifact.Artifact>> buildChildrenByParentId(Collection<org.apache.maven.artifact.Artifact> resolvedArtifacts, String projectId) {
+        Map<String, Map<String, org.apache.maven.artifact.Artifact>> childrenByParentId = new HashMap<>();
+        for (org.apache.maven.artifact.Artifact resolvedArtifact : resolvedArtifacts) {
+            List<String> trail = resolvedArtifact.getDependencyTrail();
+            if (trail == null || trail.size() < 2 || !projectId.equals(trail.get(0))) {
+                throw new IllegalArgumentException("Artifact " + resolvedArtifact + " does not have a dependency trail starting with " + projectId);
+            }
+            String parentId = trail.get(trail.size() - 2);
+            childrenByParentId.computeIfAbsent(parentId, k -> new HashMap<>())
+                .put(RuntimeArtifactsIndex.key(RepositoryUtils.toArtifact(resolvedArtifact)), resolvedArtifact);
+        }
+        return childrenByParentId;
+    }
+
+    /**
+     *
+     * @return the number of nodes taken over from Maven's graph during the last collection
+     */
+    int getNumReusedNodes() {
+        return numReusedNodes;
+    }
+
+    /**
+     * 
+     * @return the number of descriptors which could not be taken from the collect request and had to be read separately during the last collection
+     */
+    int getNumReadDescriptors() {
+        return numReadDescriptors;
+    }
+
+    /**
+     *
+     * @param rootDependency the dependency representing the project
+     * @param directDependencies the project's direct dependencies
+     * @param managedDependencies the project's dependency management
+     * @return the root node of the transformed dependency graph
+     * @throws DependencyCollectionException in case the metadata of at least one dependency could not be retrieved, contains the partial graph
+     */
+    DependencyNode collect(Dependency rootDependency, List<Dependency> directDependencies, List<Dependency> managedDependencies) throws DependencyCollectionException {
+        numReusedNodes = 0;
+        numReadDescriptors = 0;
+        Map<String, Descriptor> descriptors = collectDescriptors(rootDependency.getArtifact());
+        SubtreeDependencyCollector.CollectionState projectState = SubtreeDependencyCollector.CollectionState.of(repoSession)
+                .derive(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(repoSession, rootDependency, managedDependencies));
+        DefaultDependencyNode rootNode = SubtreeDependencyCollector.newNode(rootDependency);
+        rootNode.setRepositories(remoteRepositories);
+        try (SubtreeDependencyCollector.Batch batch = subtreeCollector.newGroupedBatch(rootNode)) {
+            addChildren(rootNode, projectId, directDependencies, projectState, batch, descriptors);
+            batch.await();
+            return batch.transform();
+        }
+    }
+
+    /**
+     * Retrieves the dependencies and managed dependencies of all artifacts resolved by Maven with a single collect request.
+     * 
+     * @param rootArtifact the project's artifact
+     * @return the descriptors keyed by {@link #descriptorKey(Artifact)} (may be incomplete, e.g. in case of relocations or errors)
+     */
+    private Map<String, Descriptor> collectDescriptors(Artifact rootArtifact) {
+        Map<String, Descriptor> descriptors = new ConcurrentHashMap<>();
+        if (resolvedDependencies.isEmpty()) {
+            return descriptors;
+        }
+        DefaultRepositorySystemSession descriptorSession = new DefaultRepositorySystemSession(repoSession);
+        descriptorSession.setDependencySelector(new DescriptorRecordingSelector(descriptors, null, true));
+        descriptorSession.setDependencyManager(null);
+        descriptorSession.setDependencyTraverser(null);
+        descriptorSession.setVersionFilter(null);
+        descriptorSession.setDependencyGraphTransformer(null);
+        CollectRequest request = new CollectRequest(resolvedDependencies, Collections.emptyList(), remoteRepositories);
+        request.setRootArtifact(rootArtifact);
+        CollectResult result;
+        try {
+            result = repoSystem.collectDependencies(descriptorSession, request);
+        } catch (DependencyCollectionException e) {
+            // the missing descriptors are read separately (to report the errors in the context of the graph)
+            result = e.getResult();
+        }
+        if (result != null && result.getRoot() != null) {
+            // nodes without dependencies are not traversed, therefore no child selector is derived for them
+            for (DependencyNode child : result.getRoot().getChildren()) {
+                descriptors.putIfAbsent(descriptorKey(child.getArtifact()), new Descriptor(Collections.emptyList()));
+            }
+        }
+        return descriptors;
+    }
+
+    private static String descriptorKey(Artifact artifact) {
+        return RuntimeArtifactsIndex.key(artifact) + ":" + artifact.getBaseVersion();
+    }
+
+    private void addChildren(DependencyNode node, String mavenNodeId, List<Dependency> dependencies,
+            SubtreeDependencyCollector.CollectionState state, SubtreeDependencyCollector.Batch batch, Map<String, Descriptor> descriptors) {
+        Map<String, org.apache.maven.artifact.Artifact> mavenChildren = childrenByParentId.get(mavenNodeId);
+        for (Dependency dependency : dependencies) {
+            if (!state.selects(dependency)) {
+                continue;
+            }
+            Dependency managedDependency = state.manage(dependency);
+            org.apache.maven.artifact.Artifact mavenChild = mavenChildren != null ? mavenChildren.get(RuntimeArtifactsIndex.key(managedDependency.getArtifact())) : null;
+            if (mavenChild == null) {
+                // either filtered by Maven or removed by Maven's conflict resolution at this position
+                batch.add(node, dependency, managedDependency, state);
+                continue;
+            }
+            // use the version Maven has chosen (in case of ranges)
+            Dependency resolvedDependency = managedDependency.setArtifact(managedDependency.getArtifact().setVersion(mavenChild.getBaseVersion()));
+            DefaultDependencyNode childNode = SubtreeDependencyCollector.newNode(resolvedDependency);
+            SubtreeDependencyCollector.setPremanagedData(childNode, dependency, managedDependency);
+            childNode.setRepositories(remoteRepositories);
+            node.getChildren().add(childNode);
+            numReusedNodes++;
+            if (state.traverses(resolvedDependency)) {
+                Descriptor descriptor = descriptors.get(descriptorKey(resolvedDependency.getArtifact()));
+                if (descriptor == null) {
+                    numReadDescriptors++;
+                    try {
+                        ArtifactDescriptorResult result = repoSystem.readArtifactDescriptor(repoSession, new ArtifactDescriptorRequest(resolvedDependency.getArtifact(), remoteRepositories, ""));
+                        descriptor = new Descriptor(result.getManagedDependencies());
+                        descriptor.dependencies.addAll(result.getDependencies());
+                    } catch (ArtifactDescriptorException e) {
+                        batch.addException(e);
+                        continue;
+                    }
+                }
+                SubtreeDependencyCollector.CollectionState childState = state.derive(
+                        new SubtreeDependencyCollector.SimpleDependencyCollectionContext(repoSession, resolvedDependency, descriptor.managedDependencies));
+                addChildren(childNode, mavenChild.getId(), descriptor.dependencies, childState, batch, descriptors);
+            }
+        }
+    }
+
+    /** The dependencies and managed dependencies of an artifact */
+    private static final class Descriptor {
+        private final List<Dependency> dependencies;
+        private final List<Dependency> managedDependencies;
+
+        Descriptor(List<Dependency> managedDependencies) {
+            this.dependencies = new ArrayList<>();
+            this.managedDependencies = managedDependencies;
+        }
+    }
+
+    /**
+     * Selects all requested dependencies (i.e. the first level below the root) and records their dependencies and managed dependencies
+     * from the collection context. The dependencies on the second level are not selected, i.e. nothing below the first level is collected.
+     */
+    private static final class DescriptorRecordingSelector implements DependencySelector {
+        private final Map<String, Descriptor> descriptors;
+        /** the descriptor of the parent node, {@code null} for the root and first level */
+        private final Descriptor descriptor;
+        private final boolean isRoot;
+
+        DescriptorRecordingSelector(Map<String, Descriptor> descriptors, Descriptor descriptor, boolean isRoot) {
+            this.descriptors = descriptors;
+            this.descriptor = descriptor;
+            this.isRoot = isRoot;
+        }
+
+        @Override
+        public boolean selectDependency(Dependency dependency) {
+            if (descriptor == null) {
+                return true;
+            }
+            descriptor.dependencies.add(dependency);
+            return false;
+        }
+
+        @Override
+        public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+            if (isRoot) {
+                return new DescriptorRecordingSelector(descriptors, null, false);
+            }
+            Descriptor childDescriptor = new Descriptor(context.getManagedDependencies());
+            descriptors.put(descriptorKey(context.getArtifact()), childDescriptor);
+            return new DescriptorRecordingSelector(descriptors, childDescriptor, false);
+        }
+    }
+}
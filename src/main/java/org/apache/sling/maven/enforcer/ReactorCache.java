@@ -0,0 +1,437 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencyManager;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.collection.DependencyTraverser;
+import org.eclipse.aether.collection.VersionFilter;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.repository.RemoteRepository;
+
+/**
+ * Cache shared by all executions of the rule within the same Maven session (i.e. the same reactor build).
+ * It is stored in the {@link SessionData} of the repository session and holds
+ * <ul>
+ * <li>the collected dependency subtrees of direct dependencies (evicted in least-recently-used order once the total number of cached nodes exceeds a limit),</li>
+ * <li>the memoized version compatibility verdicts per {@link VersionCompatibilityStrategy} and</li>
+ * <li>the memoized verdicts per artifact (whether it is contained in the runtime classpath with a compatible version) per runtime classpath
+ * and {@link VersionCompatibilityStrategy}, so that modules with the same runtime classpath check each artifact only once.</li>
+ * </ul>
+ * This class is thread-safe, so it can be used in parallel builds.
+ */
+final class ReactorCache {
+
+    static final int DEFAULT_MAX_NODES = 100_000;
+    /** the maximum number of verdicts per runtime classpath and strategy */
+    static final int MAX_ARTIFACT_VERDICTS = 10_000;
+    /** the maximum number of distinct runtime classpaths and strategies for which verdicts are kept */
+    static final int MAX_ARTIFACT_VERDICT_CACHES = 16;
+
+    private static final String SESSION_DATA_KEY = ReactorCache.class.getName();
+
+    private final int maxNodes;
+    /** in access order, i.e. the first entry is the least recently used one */
+    private final Map<SubtreeKey, CachedSubtree> subtrees;
+    private int numNodes;
+    private final ConcurrentMap<SubtreeKey, FutureTask<DependencyNode>> subtreesInCollection;
+    private final ConcurrentMap<VersionCompatibilityStrategy, VersionCompatibilityChecker> versionCompatibilityCheckers;
+    /** in access order, i.e. the first entry is the least recently used one */
+    private final Map<VerdictCacheKey, ArtifactVerdictCache> artifactVerdictCaches;
+    private final AtomicInteger numHits;
+    private final AtomicInteger numMisses;
+
+    ReactorCache(int maxNodes) {
+        this.maxNodes = maxNodes;
+        subtrees = new LinkedHashMap<>(16, 0.75f, true);
+        numNodes = 0;
+        subtreesInCollection = new ConcurrentHashMap<>();
+        versionCompatibilityCheckers = new ConcurrentHashMap<>();
+        artifactVerdictCaches = new LinkedHashMap<>(16, 0.75f, true);
+        numHits = new AtomicInteger();
+        numMisses = new AtomicInteger();
+    }
+
+    /**
+     * Returns the cache bound to the given session, creates a new one if necessary.
+     * The limit is only considered by the first execution creating the cache.
+     * 
+     * @param session the repository session of the current Maven session
+     * @param maxNodes the maximum number of dependency nodes to keep
+     * @return the cache
+     */
+    static ReactorCache getOrCreate(RepositorySystemSession session, int maxNodes) {
+        SessionData data = session.getData();
+        while (true) {
+            Object cache = data.get(SESSION_DATA_KEY);
+            if (cache instanceof ReactorCache) {
+                return (ReactorCache) cache;
+            } else if (cache != null) {
+                // created by another version of this class (i.e. loaded from another class loader), cannot be shared
+                return new ReactorCache(maxNodes);
+            }
+            ReactorCache newCache = new ReactorCache(maxNodes);
+            if (data.set(SESSION_DATA_KEY, null, newCache)) {
+                return newCache;
+            }
+        }
+    }
+
+    /**
+     * 
+     * @param key the key
+     * @return a deep copy of the cached subtree (which may be modified by the caller) or {@code null} in case there is no cached subtree for the given key
+     */
+    DependencyNode getSubtree(SubtreeKey key) {
+        CachedSubtree subtree;
+        synchronized (subtrees) {
+            subtree = subtrees.get(key);
+        }
+        if (subtree == null) {
+            numMisses.incrementAndGet();
+            return null;
+        }
+        numHits.incrementAndGet();
+        return copy(subtree.root);
+    }
+
+    /**
+     * Caches the given subtree. The given subtree must not be modified afterwards.
+     * 
+     * @param key the key
+     * @param root the root node of the subtree
+     */
+    void putSubtree(SubtreeKey key, DependencyNode root) {
+        int subtreeNodes = countNodes(root);
+        if (subtreeNodes > maxNodes) {
+            return;
+        }
+        synchronized (subtrees) {
+            CachedSubtree oldSubtree = subtrees.put(key, new CachedSubtree(root, subtreeNodes));
+            if (oldSubtree != null) {
+                numNodes -= oldSubtree.numNodes;
+            }
+            numNodes += subtreeNodes;
+            Iterator<CachedSubtree> iterator = subtrees.values().iterator();
+            while (numNodes > maxNodes && iterator.hasNext()) {
+                numNodes -= iterator.next().numNodes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached subtree or collects it with the given callable.
+     * In case the same subtree is currently being collected by another thread, waits for that collection to finish instead of collecting it again.
+     * 
+     * @param key the key
+     * @param collector the callable collecting the subtree (only called in case the subtree is neither cached nor currently being collected)
+     * @return a deep copy of the subtree (which may be modified by the caller)
+     * @throws DependencyCollectionException in case collecting failed (the subtree is not cached in that case)
+     * @throws InterruptedException in case the thread has been interrupted while waiting for another thread collecting the same subtree
+     */
+    DependencyNode getOrCollect(SubtreeKey key, Callable<DependencyNode> collector) throws DependencyCollectionException, InterruptedException {
+        DependencyNode subtree = getSubtree(key);
+        if (subtree != null) {
+            return subtree;
+        }
+        FutureTask<DependencyNode> task = new FutureTask<>(collector);
+        FutureTask<DependencyNode> existingTask = subtreesInCollection.putIfAbsent(key, task);
+        if (existingTask == null) {
+            try {
+                task.run();
+                putSubtree(key, getResult(task));
+            } finally {
+                subtreesInCollection.remove(key, task);
+            }
+        } else {
+            task = existingTask;
+            // the other thread already counted a miss
+            numMisses.decrementAndGet();
+            numHits.incrementAndGet();
+        }
+        return copy(getResult(task));
+    }
+
+    private static DependencyNode getResult(Future<DependencyNode> task) throws DependencyCollectionException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DependencyCollectionException) {
+                throw (DependencyCollectionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException("Unexpected exception while collecting dependencies", cause);
+            }
+        }
+    }
+
+    VersionCompatibilityChecker getVersionCompatibilityChecker(VersionCompatibilityStrategy strategy) {
+        return versionCompatibilityCheckers.computeIfAbsent(strategy, VersionCompatibilityChecker::new);
+    }
+
+    /**
+     * 
+     * @param runtimeArtifactsIndex the runtime classpath of the current project
+     * @param strategy the strategy with which the versions are compared
+     * @return the verdicts shared by all projects with the same runtime classpath and strategy
+     */
+    ArtifactVerdictCache getArtifactVerdictCache(RuntimeArtifactsIndex runtimeArtifactsIndex, VersionCompatibilityStrategy strategy) {
+        VerdictCacheKey key = new VerdictCacheKey(runtimeArtifactsIndex.getCoordinates(), strategy);
+        synchronized (artifactVerdictCaches) {
+            ArtifactVerdictCache verdictCache = artifactVerdictCaches.computeIfAbsent(key, k -> new ArtifactVerdictCache(MAX_ARTIFACT_VERDICTS));
+            Iterator<ArtifactVerdictCache> iterator = artifactVerdictCaches.values().iterator();
+            while (artifactVerdictCaches.size() > MAX_ARTIFACT_VERDICT_CACHES && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            return verdictCache;
+        }
+    }
+
+    int getNumHits() {
+        return numHits.get();
+    }
+
+    int getNumMisses() {
+        return numMisses.get();
+    }
+
+    int getNumNodes() {
+        synchronized (subtrees) {
+            return numNodes;
+        }
+    }
+
+    /**
+     * Copies all nodes of the given graph. Nodes being referenced multiple times are only copied once.
+     * @param root the root node of the graph
+     * @return the root node of the copy
+     */
+    static DependencyNode copy(DependencyNode root) {
+        return copy(root, new IdentityHashMap<>());
+    }
+
+    private static DependencyNode copy(DependencyNode node, Map<DependencyNode, DependencyNode> copies) {
+        DependencyNode copy = copies.get(node);
+        if (copy == null) {
+            DefaultDependencyNode newCopy = new DefaultDependencyNode(node);
+            copies.put(node, newCopy);
+            List<DependencyNode> children = new ArrayList<>(node.getChildren().size());
+            for (DependencyNode child : node.getChildren()) {
+                children.add(copy(child, copies));
+            }
+            newCopy.setChildren(children);
+            copy = newCopy;
+        }
+        return copy;
+    }
+
+    static int countNodes(DependencyNode root) {
+        Map<DependencyNode, Boolean> visited = new IdentityHashMap<>();
+        List<DependencyNode> nodesToVisit = new ArrayList<>();
+        nodesToVisit.add(root);
+        while (!nodesToVisit.isEmpty()) {
+            DependencyNode node = nodesToVisit.remove(nodesToVisit.size() - 1);
+            if (visited.put(node, Boolean.TRUE) == null) {
+                nodesToVisit.addAll(node.getChildren());
+            }
+        }
+        return visited.size();
+    }
+
+    /**
+     * The verdicts per artifact for one runtime classpath and strategy, evicted in least-recently-used order once they exceed a limit.
+     * The artifact (including its version) is used as key, i.e. the lookup does not allocate.
+     */
+    static final class ArtifactVerdictCache {
+        private final int maxVerdicts;
+        /** in access order, i.e. the first entry is the least recently used one */
+        private final LinkedHashMap<Artifact, ArtifactVerdict> verdicts;
+
+        ArtifactVerdictCache(int maxVerdicts) {
+            this.maxVerdicts = maxVerdicts;
+            this.verdicts = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        /**
+         * 
+         * @param artifact the artifact
+         * @return the cached verdict or {@code null}
+         */
+        synchronized ArtifactVerdict get(Artifact artifact) {
+            return verdicts.get(artifact);
+        }
+
+        synchronized void put(Artifact artifact, ArtifactVerdict verdict) {
+            verdicts.put(artifact, verdict);
+            Iterator<ArtifactVerdict> iterator = verdicts.values().iterator();
+            while (verdicts.size() > maxVerdicts && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        synchronized int size() {
+            return verdicts.size();
+        }
+    }
+
+    /** Whether an artifact is contained in the runtime classpath with a compatible version, together with the messages about incompatible versions */
+    static final class ArtifactVerdict {
+        private final boolean isContained;
+        private final List<String> incompatibleVersionMessages;
+
+        ArtifactVerdict(boolean isContained, List<String> incompatibleVersionMessages) {
+            this.isContained = isContained;
+            this.incompatibleVersionMessages = Collections.unmodifiableList(new ArrayList<>(incompatibleVersionMessages));
+        }
+
+        boolean isContained() {
+            return isContained;
+        }
+
+        List<String> getIncompatibleVersionMessages() {
+            return incompatibleVersionMessages;
+        }
+    }
+
+    private static final class VerdictCacheKey {
+        private final List<String> runtimeCoordinates;
+        private final VersionCompatibilityStrategy strategy;
+
+        VerdictCacheKey(List<String> runtimeCoordinates, VersionCompatibilityStrategy strategy) {
+            this.runtimeCoordinates = runtimeCoordinates;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(runtimeCoordinates, strategy);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            VerdictCacheKey other = (VerdictCacheKey) obj;
+            return strategy == other.strategy && runtimeCoordinates.equals(other.runtimeCoordinates);
+        }
+    }
+
+    private static final class CachedSubtree {
+        private final DependencyNode root;
+        private final int numNodes;
+
+        CachedSubtree(DependencyNode root, int numNodes) {
+            this.root = root;
+            this.numNodes = numNodes;
+        }
+    }
+
+    /**
+     * Identifies the subtree of a direct dependency, i.e. the dependency itself and the effective (derived)
+     * selector, manager, traverser and version filter with which its transitive dependencies are collected.
+     */
+    static final class SubtreeKey {
+        private final String dependency;
+        private final DependencySelector selector;
+        private final DependencyManager manager;
+        private final DependencyTraverser traverser;
+        private final VersionFilter versionFilter;
+        private final List<RemoteRepository> repositories;
+        private final int hashCode;
+
+        SubtreeKey(Dependency dependency, DependencySelector selector, DependencyManager manager,
+                DependencyTraverser traverser, VersionFilter versionFilter, List<RemoteRepository> repositories) {
+            this.dependency = toString(dependency);
+            this.selector = selector;
+            this.manager = manager;
+            this.traverser = traverser;
+            this.versionFilter = versionFilter;
+            this.repositories = repositories;
+            this.hashCode = Objects.hash(this.dependency, selector, manager, traverser, versionFilter, repositories);
+        }
+
+        private static String toString(Dependency dependency) {
+            List<String> exclusions = new ArrayList<>();
+            for (Exclusion exclusion : dependency.getExclusions()) {
+                exclusions.add(exclusion.toString());
+            }
+            Collections.sort(exclusions);
+            return dependency.getArtifact() + " (" + dependency.getScope() + ", " + dependency.isOptional() + ") " + exclusions;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            SubtreeKey other = (SubtreeKey) obj;
+            return hashCode == other.hashCode && dependency.equals(other.dependency) && Objects.equals(selector, other.selector)
+                    && Objects.equals(manager, other.manager) && Objects.equals(traverser, other.traverser)
+                    && Objects.equals(versionFilter, other.versionFilter) && Objects.equals(repositories, other.repositories);
+        }
+
+        @Override
+        public String toString() {
+            return dependency;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+
+/**
+ * Delegates to another logger and additionally records all messages emitted with
+ * {@link #warnOrError(CharSequence)} or {@link #error(CharSequence)} so that they can be replayed later.
+ */
+final class RecordingEnforcerLogger implements EnforcerLogger {
+
+    private final EnforcerLogger delegate;
+    private final List<ResultCache.Message> messages;
+
+    RecordingEnforcerLogger(EnforcerLogger delegate) {
+        this.delegate = delegate;
+        this.messages = new ArrayList<>();
+    }
+
+    List<ResultCache.Message> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public void warnOrError(CharSequence message) {
+        messages.add(new ResultCache.Message(ResultCache.Message.Level.WARN_OR_ERROR, message.toString()));
+        delegate.warnOrError(message);
+    }
+
+    @Override
+    public void warnOrError(Supplier<CharSequence> messageSupplier) {
+        warnOrError(messageSupplier.get());
+    }
+
+    @Override
+    public void debug(CharSequence message) {
+        delegate.debug(message);
+    }
+
+    @Override
+    public void debug(Supplier<CharSequence> messageSupplier) {
+        delegate.debug(messageSupplier);
+    }
+
+    @Override
+    public void info(CharSequence message) {
+        delegate.info(message);
+    }
+
+    @Override
+    public void info(Supplier<CharSequence> messageSupplier) {
+        delegate.info(messageSupplier);
+    }
+
+    @Override
+    public void warn(CharSequence message) {
+        delegate.warn(message);
+    }
+
+    @Override
+    public void warn(Supplier<CharSequence> messageSupplier) {
+        delegate.warn(messageSupplier);
+    }
+
+    @Override
+    public void error(CharSequence message) {
+        messages.add(new ResultCache.Message(ResultCache.Message.Level.ERROR, message.toString()));
+        delegate.error(message);
+    }
+
+    @Override
+    public void error(Supplier<CharSequence> messageSupplier) {
+        error(messageSupplier.get());
+    }
+}
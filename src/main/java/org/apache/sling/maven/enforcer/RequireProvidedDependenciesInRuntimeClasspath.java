@@ -19,27 +19,37 @@ package org.apache.sling.maven.enforcer;
  * under the License.
  */
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ChoiceFormat;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.maven.RepositoryUtils;
-import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
 import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.enforcer.rule.api.AbstractEnforcerRule;
+import org.apache.maven.enforcer.rule.api.EnforcerLevel;
 import org.apache.maven.enforcer.rule.api.EnforcerLogger;
 import org.apache.maven.enforcer.rule.api.EnforcerRuleException;
 import org.apache.maven.execution.MavenSession;
@@ -47,25 +57,29 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.utils.logging.MessageBuilder;
 import org.apache.maven.shared.utils.logging.MessageUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryException;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.ArtifactTypeRegistry;
 import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.collection.CollectResult;
 import org.eclipse.aether.collection.DependencyCollectionContext;
 import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencyGraphTransformer;
 import org.eclipse.aether.collection.DependencySelector;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.graph.DependencyNode;
-import org.eclipse.aether.graph.DependencyVisitor;
 import org.eclipse.aether.graph.Exclusion;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
 import org.eclipse.aether.util.graph.selector.AndDependencySelector;
 import org.eclipse.aether.util.graph.selector.ExclusionDependencySelector;
 import org.eclipse.aether.util.graph.selector.OptionalDependencySelector;
 import org.eclipse.aether.util.graph.selector.ScopeDependencySelector;
 import org.eclipse.aether.util.graph.selector.StaticDependencySelector;
-import org.eclipse.aether.util.graph.visitor.TreeDependencyVisitor;
 
 /** Checks that the runtime classpath (e.g. used by Maven Plugins via the
  * <a href="https://maven.apache.org/guides/mini/guide-maven-classloading.html#3-plugin-classloaders">Plugin Classloader</a>) contains all
@@ -85,6 +99,13 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
      * @see {@link #setExcludes(List)} */
     private List<String> excludes = null;
 
+    /**
+     * A file (absolute or relative to the project's base directory) or classpath resource containing additional exclude patterns (one per line).
+     * 
+     * @see {@link #setExcludesFile(String)}
+     */
+    private String excludesFile = null;
+
     /**
      * Whether to include optional dependencies in the check. Default = false.
      * 
@@ -99,6 +120,164 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
      */
     private boolean includeDirects = false;
 
+    /**
+     * The policy for checking version compatibility of provided dependencies with a single version. Default = semver.
+     * 
+     * @see {@link #setVersionCompatibility(String)}
+     */
+    private VersionCompatibilityStrategy versionCompatibility = VersionCompatibilityStrategy.SEMVER;
+
+    /**
+     * Whether to cache the result of the check on disk and reuse it as long as none of the inputs changed. Default = false.
+     * 
+     * @see {@link #setUseResultCache(boolean)}
+     */
+    private boolean useResultCache = false;
+
+    /**
+     * The directory in which to store the result cache. Default = {@code ${project.build.directory}/enforcer-rules-cache}.
+     * 
+     * @see {@link #setResultCacheDirectory(File)}
+     */
+    private File resultCacheDirectory = null;
+
+    private static final String DEFAULT_RESULT_CACHE_DIRECTORY_NAME = "enforcer-rules-cache";
+
+    /**
+     * Whether to collect the dependencies separately for each direct dependency and share the collected subtrees
+     * (and the version compatibility verdicts) with all other executions of this rule within the same reactor build. Default = false.
+     * 
+     * @see {@link #setUseReactorCache(boolean)}
+     */
+    private boolean useReactorCache = false;
+
+    /**
+     * The maximum number of dependency nodes kept in the reactor cache. Default = 100000.
+     * 
+     * @see {@link #setReactorCacheMaxNodes(int)}
+     */
+    private int reactorCacheMaxNodes = ReactorCache.DEFAULT_MAX_NODES;
+
+    /**
+     * Whether to collect the dependencies separately for each direct dependency in parallel. Default = false.
+     * 
+     * @see {@link #setParallelCollection(boolean)}
+     */
+    private boolean parallelCollection = false;
+
+    /**
+     * The maximum number of direct dependencies to collect in parallel. Default = number of available processors.
+     * 
+     * @see {@link #setParallelCollectionThreads(int)}
+     */
+    private int parallelCollectionThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether to build the dependency graph on top of the one Maven already resolved for the project (instead of collecting it from scratch). Default = false.
+     * 
+     * @see {@link #setReuseProjectDependencyGraph(boolean)}
+     */
+    private boolean reuseProjectDependencyGraph = false;
+
+    /**
+     * The maximum number of paths to print for each missing dependency. Default = 1 (i.e. only the shortest path).
+     * 
+     * @see {@link #setMaxReportedPaths(int)}
+     */
+    private int maxReportedPaths = 1;
+
+    /**
+     * The number of missing dependencies after which to stop the check. Default = 0 (i.e. no limit).
+     * 
+     * @see {@link #setMaxViolations(int)}
+     */
+    private int maxViolations = 0;
+
+    /**
+     * Whether to check the dependencies while they are being collected and cancel the collection once {@link #maxViolations} (at least 1) missing dependencies have been found.
+     * Those are only unverified candidates as the dependencies are checked before conflict resolution. Default = false.
+     * 
+     * @see {@link #setFailFast(boolean)}
+     */
+    private boolean failFast = false;
+
+    /**
+     * Whether to log the timings and counters of the check as one-line summary and write them to {@link #metricsFile}. Default = false.
+     * 
+     * @see {@link #setWriteMetrics(boolean)}
+     */
+    private boolean writeMetrics = false;
+
+    /**
+     * The JSON file to which to write the metrics. Default = {@code ${project.build.directory}/enforcer-rules-metrics/requireProvidedDependenciesInRuntimeClasspath.json}.
+     * 
+     * @see {@link #setMetricsFile(File)}
+     */
+    private File metricsFile = null;
+
+    private static final String DEFAULT_METRICS_FILE_NAME = "enforcer-rules-metrics/requireProvidedDependenciesInRuntimeClasspath.json";
+
+    /**
+     * The text file to which to write the dependency tree (with debug enabled or in case the dependency collection failed).
+     * Default = {@code ${project.build.directory}/enforcer-rules-dependency-tree/requireProvidedDependenciesInRuntimeClasspath.txt}.
+     * 
+     * @see {@link #setDependencyTreeFile(File)}
+     */
+    private File dependencyTreeFile = null;
+
+    private static final String DEFAULT_DEPENDENCY_TREE_FILE_NAME = "enforcer-rules-dependency-tree/requireProvidedDependenciesInRuntimeClasspath.txt";
+
+    /**
+     * The maximum depth up to which the dependency tree is written (-1 for no limit). Default = 100.
+     * 
+     * @see {@link #setDependencyTreeMaxDepth(int)}
+     */
+    private int dependencyTreeMaxDepth = 100;
+
+    /**
+     * The maximum number of nodes of the dependency tree being written (0 for no limit). Default = 100000.
+     * 
+     * @see {@link #setDependencyTreeMaxNodes(int)}
+     */
+    private int dependencyTreeMaxNodes = 100000;
+
+    /**
+     * The formats of the violation reports to write, each entry being either {@code jsonl} or {@code sarif}. Default = no reports.
+     * 
+     * @see {@link #setReportFormats(List)}
+     */
+    private List<String> reportFormats = null;
+
+    /**
+     * The directory in which to write the violation reports. Default = {@code ${project.build.directory}/enforcer-rules-reports}.
+     * 
+     * @see {@link #setReportDirectory(File)}
+     */
+    private File reportDirectory = null;
+
+    private static final String DEFAULT_REPORT_DIRECTORY_NAME = "enforcer-rules-reports";
+
+    private static final String REPORT_FILE_BASE_NAME = ViolationReportWriter.RULE_NAME;
+
+    private static final Pattern PROFILE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+
+    /**
+     * Whether to only report missing dependencies containing at least one class referenced by the project's own classes
+     * which is neither contained in the runtime classpath nor provided by the JRE. Requires the project's classes to be compiled. Default = false.
+     * 
+     * @see {@link #setClassLevelCheck(boolean)}
+     */
+    private boolean classLevelCheck = false;
+
+    /**
+     * Named profiles each overriding the excludes and flags of the rule. In case at least one profile is given the dependencies
+     * are collected only once (at least the union of the graphs of all profiles) and the check is performed for each profile on
+     * the filtered graph. Default = no profiles (i.e. a single check with the rule's configuration).
+     * 
+     * @see {@link #setProfiles(List)}
+     */
+    private List<Profile> profiles = null;
+
     @Inject
     private MavenProject project;
     
@@ -110,15 +289,277 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
 
     @Override
     public void execute() throws EnforcerRuleException {
+        RuleMetrics metrics = new RuleMetrics(project.getId());
+        // use the ones for https://maven.apache.org/guides/mini/guide-maven-classloading.html#3-plugin-classloaders
+        @SuppressWarnings("deprecation")
+        List<org.eclipse.aether.artifact.Artifact> runtimeArtifacts = project.getRuntimeArtifacts().stream().map(RepositoryUtils::toArtifact).collect(Collectors.toList());
+        // no guard supported here due to https://issues.apache.org/jira/browse/MENFORCER-488
+        getLog().debug("Collected " + runtimeArtifacts.size()+ " runtime dependencies ");
+        for (Artifact runtimeArtifact : runtimeArtifacts) {
+            getLog().debug(runtimeArtifact.toString());
+        }
+        metrics.set("runtimeArtifacts", runtimeArtifacts.size());
+
+        List<ViolationReportWriter.Format> reportFormatList = getReportFormats();
+        RuleMetrics.Timer selectorSetupTimer = metrics.start(RuleMetrics.Phase.SELECTOR_SETUP);
+        // without configured profiles the rule's own configuration is checked as a single implicit profile
+        List<CheckProfile> checkProfiles = createCheckProfiles();
+        selectorSetupTimer.close();
+        boolean hasNamedProfiles = checkProfiles.get(0).name != null;
+        if (failFast && hasNamedProfiles) {
+            getLog().warn("Ignoring parameter 'failFast' as it is not supported together with 'profiles'");
+        }
+        boolean isFailFast = failFast && !hasNamedProfiles;
+
+        ResultCache resultCache = null;
+        String resultFingerprint = null;
+        if (useResultCache && hasNamedProfiles) {
+            getLog().debug("Not using the result cache as profiles are configured");
+        } else if (useResultCache && classLevelCheck) {
+            // the project's classes are not part of the fingerprint
+            getLog().debug("Not using the result cache as the class level check is enabled");
+        } else if (useResultCache) {
+            ResultCache.Result cachedResult = null;
+            try (RuleMetrics.Timer timer = metrics.start(RuleMetrics.Phase.RESULT_CACHE)) {
+                String codeFingerprint = getCodeFingerprint();
+                resultFingerprint = codeFingerprint != null ? calculateResultFingerprint(codeFingerprint, runtimeArtifacts, checkProfiles.get(0).excludesMatchers, reportFormatList) : null;
+                if (codeFingerprint == null) {
+                    getLog().debug("Not using the result cache as the code of the rule cannot be fingerprinted");
+                } else if (resultFingerprint == null) {
+                    getLog().debug("Not using the result cache as the project depends on SNAPSHOT artifacts from outside the reactor or declares version ranges");
+                } else if (!reportFormatList.stream().allMatch(f -> Files.isRegularFile(ViolationReportWriter.getFile(getReportDirectory(), REPORT_FILE_BASE_NAME, f)))) {
+                    // the reports cannot be restored from the cache
+                    getLog().debug("Not using the result cache as the violation reports do not exist");
+                    resultCache = new ResultCache(getResultCacheFile());
+                } else {
+                    resultCache = new ResultCache(getResultCacheFile());
+                    cachedResult = readCachedResult(resultCache, resultFingerprint);
+                }
+            }
+            metrics.set("resultCacheHits", cachedResult != null ? 1 : 0);
+            if (cachedResult != null) {
+                getLog().info("Dependencies have not changed, reusing the result from " + resultCache.getFile());
+                cachedResult.replay(getLog());
+                metrics.set("violations", cachedResult.getNumViolations());
+                emitMetrics(metrics);
+                failOnViolations(cachedResult.getNumViolations(), false, false);
+                return;
+            }
+        }
+
+        final RuntimeArtifactsIndex runtimeArtifactsIndex;
+        final ClassLevelChecker classLevelChecker;
+        try (RuleMetrics.Timer timer = metrics.start(RuleMetrics.Phase.INDEXING)) {
+            runtimeArtifactsIndex = new RuntimeArtifactsIndex(runtimeArtifacts);
+            classLevelChecker = createClassLevelChecker(runtimeArtifacts, metrics);
+        }
         // get a new session to be able to tweak the dependency selector
+        selectorSetupTimer = metrics.start(RuleMetrics.Phase.SELECTOR_SETUP);
         DefaultRepositorySystemSession newRepoSession = new DefaultRepositorySystemSession(session.getRepositorySession());
+        int effectiveMaxViolations = isFailFast ? Math.max(1, maxViolations) : Math.max(0, maxViolations);
+        FailFastDependencySelector failFastSelector = null;
+        DependencyGraphTransformer profileTransformer = null;
+        if (hasNamedProfiles) {
+            // collect everything selected by at least one profile, the conflict resolution is performed separately on each profile's graph
+            newRepoSession.setDependencySelector(new UnionDependencySelector(checkProfiles.stream().map(CheckProfile::getSelector).collect(Collectors.toList())));
+            // the profile selectors are applied to the dependencies before management (as recorded in the nodes)
+            newRepoSession.setConfigProperty(DependencyManagerUtils.CONFIG_PROP_VERBOSE, true);
+            profileTransformer = newRepoSession.getDependencyGraphTransformer();
+            newRepoSession.setDependencyGraphTransformer(null);
+        } else {
+            if (isFailFast) {
+                // must be the last one to only see the dependencies selected by all other selectors
+                failFastSelector = new FailFastDependencySelector(runtimeArtifactsIndex, effectiveMaxViolations);
+                checkProfiles.get(0).selectors.add(failFastSelector);
+            }
+            newRepoSession.setDependencySelector(checkProfiles.get(0).getSelector());
+        }
+
+        if (useReactorCache && isFailFast) {
+            getLog().debug("Not using the reactor cache as subtrees collected in fail-fast mode cannot be shared");
+        }
+        ReactorCache reactorCache = useReactorCache && !isFailFast ? ReactorCache.getOrCreate(session.getRepositorySession(), reactorCacheMaxNodes) : null;
+        // record all messages to be able to replay them from the cache
+        RecordingEnforcerLogger recordingLog = resultCache != null ? new RecordingEnforcerLogger(getLog()) : null;
+        EnforcerLogger checkLog = recordingLog != null ? recordingLog : getLog();
+        selectorSetupTimer.close();
+
+        Dependency rootDependency = RepositoryUtils.toDependency(project.getArtifact(), null);
+        boolean isPartial = false;
+        boolean isUnverified = false;
+        try {
+            try {
+                DependencyNode rootDependencyNode = collectDependencyNodes(rootDependency, newRepoSession, reactorCache, metrics);
+                if (hasNamedProfiles) {
+                    metrics.set("profiles", checkProfiles.size());
+                }
+                for (Iterator<CheckProfile> checkProfileIterator = checkProfiles.iterator(); checkProfileIterator.hasNext();) {
+                    CheckProfile checkProfile = checkProfileIterator.next();
+                    final CompactDependencyGraph graph;
+                    try (RuleMetrics.Timer timer = metrics.start(RuleMetrics.Phase.CONVERSION)) {
+                        DependencyNode profileRootNode = rootDependencyNode;
+                        if (hasNamedProfiles) {
+                            profileRootNode = new DependencyGraphFilter(checkProfile.getSelector(), newRepoSession).filter(rootDependencyNode);
+                            if (profileTransformer != null) {
+                                profileRootNode = profileTransformer.transformGraph(profileRootNode, new SubtreeDependencyCollector.SimpleDependencyGraphTransformationContext(newRepoSession));
+                            }
+                        }
+                        graph = CompactDependencyGraph.of(profileRootNode);
+                    }
+                    if (!checkProfileIterator.hasNext()) {
+                        // the collected nodes are no longer referenced during the last check (unless shared via the reactor cache)
+                        rootDependencyNode = null;
+                    }
+                    if (hasNamedProfiles) {
+                        getLog().info("Checking profile '" + checkProfile.name + "' (" + graph.getNumNodes() + " dependency nodes)");
+                    }
+                    isPartial |= checkProfile(checkProfile, graph, runtimeArtifactsIndex, reactorCache, checkLog, effectiveMaxViolations, reportFormatList, classLevelChecker, metrics);
+                }
+            } catch (FailFastDependencySelector.ViolationLimitReachedException e) {
+                getLog().debug(e.getMessage());
+                try (RuleMetrics.Timer timer = metrics.start(RuleMetrics.Phase.REPORTING);
+                     ViolationReportWriter reportWriter = openReportWriter(reportFormatList, checkProfiles.get(0).getReportFileBaseName())) {
+                    checkProfiles.get(0).numViolations = failFastSelector.report(checkLog, reportWriter);
+                }
+                isPartial = true;
+                isUnverified = true;
+            }
+        } catch (DependencyCollectionException e) {
+            DependencyNode partialRootNode = e.getResult() != null ? e.getResult().getRoot() : null;
+            String treeSummary = partialRootNode != null ? writeDependencyTree(partialRootNode, "Partial dependency tree") : "No partial dependency tree available";
+            throw new EnforcerRuleException("Could not retrieve dependency metadata for project  : "
+                    + e.getMessage() + ". " + treeSummary, e);
+        } catch (RepositoryException e) {
+            throw new EnforcerRuleException("Could not transform the dependency graph: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new EnforcerRuleException("Could not write violation report to " + getReportDirectory() + ": " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw new EnforcerRuleException("Could not write violation report to " + getReportDirectory() + ": " + e.getCause().getMessage(), e.getCause());
+        }
+        int numViolations = checkProfiles.stream().mapToInt(p -> p.numViolations).sum();
+        metrics.set("violations", numViolations);
+        // partial results depend on the order in which the dependencies are checked
+        if (resultCache != null && !isPartial) {
+            try (RuleMetrics.Timer timer = metrics.start(RuleMetrics.Phase.RESULT_CACHE)) {
+                resultCache.write(resultFingerprint, new ResultCache.Result(numViolations, recordingLog.getMessages()));
+            } catch (IOException e) {
+                getLog().warn("Could not write result cache file " + resultCache.getFile() + ": " + e.getMessage());
+            }
+        }
+        emitMetrics(metrics);
+        if (hasNamedProfiles) {
+            failOnViolations(checkProfiles, isPartial);
+        } else {
+            failOnViolations(numViolations, isPartial, isUnverified);
+        }
+    }
+
+    /**
+     * 
+     * @return the named {@link #profiles} or a single implicit profile (without name) for the rule's own configuration in case there are none
+     * @throws EnforcerRuleException in case a profile is invalid
+     */
+    private List<CheckProfile> createCheckProfiles() throws EnforcerRuleException {
+        List<CheckProfile> checkProfiles = new ArrayList<>();
+        if (profiles == null || profiles.isEmpty()) {
+            List<ExcludesMatcher> excludesMatchers = getExcludesMatchers(excludes, excludesFile);
+            checkProfiles.add(new CheckProfile(null, excludesMatchers, createDependencySelectors(excludesMatchers), versionCompatibility));
+            return checkProfiles;
+        }
+        Set<String> names = new HashSet<>();
+        for (Profile profile : profiles) {
+            String name = profile.getName();
+            if (name == null || !PROFILE_NAME_PATTERN.matcher(name).matches()) {
+                throw new EnforcerRuleException("Invalid profile name '" + name + "', must only consist of letters, digits, '.', '_' and '-'");
+            }
+            if (!names.add(name)) {
+                throw new EnforcerRuleException("Duplicate profile name '" + name + "'");
+            }
+            List<ExcludesMatcher> profileExcludesMatchers = getExcludesMatchers(
+                    profile.getExcludes() != null ? profile.getExcludes() : excludes,
+                    profile.getExcludesFile() != null ? profile.getExcludesFile() : excludesFile);
+            boolean profileIncludeOptionals = profile.getIncludeOptionalDependencies() != null ? profile.getIncludeOptionalDependencies() : includeOptionals;
+            boolean profileIncludeDirects = profile.getIncludeDirectDependencies() != null ? profile.getIncludeDirectDependencies() : includeDirects;
+            final VersionCompatibilityStrategy profileVersionCompatibility;
+            try {
+                profileVersionCompatibility = profile.getVersionCompatibility() != null ? VersionCompatibilityStrategy.fromString(profile.getVersionCompatibility()) : versionCompatibility;
+            } catch (IllegalArgumentException e) {
+                throw new EnforcerRuleException("Invalid parameter 'versionCompatibility' of profile '" + name + "': " + e.getMessage(), e);
+            }
+            checkProfiles.add(new CheckProfile(name, profileExcludesMatchers,
+                    createDependencySelectors(profileExcludesMatchers, profileIncludeOptionals, profileIncludeDirects), profileVersionCompatibility));
+        }
+        return checkProfiles;
+    }
+
+    /**
+     * Checks the graph of a single profile and adds the counters to the metrics (prefixed for named profiles).
+     * 
+     * @return {@code true} in case the check has been stopped after reaching the maximum number of violations
+     * @throws IOException in case the violation report could not be opened or closed
+     */
+    private boolean checkProfile(CheckProfile checkProfile, CompactDependencyGraph graph, RuntimeArtifactsIndex runtimeArtifactsIndex, ReactorCache reactorCache,
+            EnforcerLogger log, int maxViolations, List<ViolationReportWriter.Format> reportFormatList, ClassLevelChecker classLevelChecker, RuleMetrics metrics) throws IOException {
+        String prefix = checkProfile.getMetricsPrefix();
+        metrics.set(prefix + "graphNodes", graph.getNumNodes());
+        metrics.set(prefix + "graphEdges", graph.getNumEdges());
+        VersionCompatibilityChecker versionCompatibilityChecker = reactorCache != null ? reactorCache.getVersionCompatibilityChecker(checkProfile.versionCompatibility)
+                : new VersionCompatibilityChecker(checkProfile.versionCompatibility);
+        // the checker may be shared with other executions
+        long numVersionChecksBefore = versionCompatibilityChecker.getNumChecks();
+        long numVersionCheckCacheHitsBefore = versionCompatibilityChecker.getNumCacheHits();
+        final MissingArtifactsDependencyVisitor depVisitor;
+        try (ViolationReportWriter reportWriter = openReportWriter(reportFormatList, checkProfile.getReportFileBaseName())) {
+            depVisitor = checkForMissingArtifacts(graph, runtimeArtifactsIndex, versionCompatibilityChecker, log, maxViolations, reportWriter, classLevelChecker,
+                    reactorCache != null ? reactorCache.getArtifactVerdictCache(runtimeArtifactsIndex, checkProfile.versionCompatibility) : null);
+        }
+        metrics.add(RuleMetrics.Phase.TRAVERSAL, depVisitor.getTotalNanos() - depVisitor.getReportingNanos());
+        metrics.add(RuleMetrics.Phase.REPORTING, depVisitor.getReportingNanos());
+        metrics.set(prefix + "visitedNodes", depVisitor.getNumVisitedNodes());
+        metrics.set(prefix + "distinctArtifacts", depVisitor.getNumDistinctArtifacts());
+        if (classLevelChecker != null) {
+            metrics.set(prefix + "classLevelIgnoredArtifacts", depVisitor.getNumIgnoredArtifacts());
+        }
+        metrics.set(prefix + "versionChecks", versionCompatibilityChecker.getNumChecks() - numVersionChecksBefore);
+        metrics.set(prefix + "versionCheckCacheHits", versionCompatibilityChecker.getNumCacheHits() - numVersionCheckCacheHitsBefore);
+        if (reactorCache != null) {
+            metrics.set(prefix + "artifactVerdictCacheHits", depVisitor.getNumArtifactVerdictCacheHits());
+        }
+        if (checkProfile.name == null) {
+            // the selectors of named profiles are also evaluated by the union selector and the graph filter
+            ExcludesDependencySelector excludesSelector = (ExcludesDependencySelector) checkProfile.selectors.stream()
+                    .filter(ExcludesDependencySelector.class::isInstance).findFirst().orElse(null);
+            metrics.set("excludedDependencies", excludesSelector != null ? excludesSelector.getNumExcludedDependencies() : 0);
+        }
+        metrics.set(prefix + "violations", depVisitor.getNumMissingArtifacts());
+        checkProfile.numViolations = depVisitor.getNumMissingArtifacts();
+        return depVisitor.isPartial();
+    }
+
+    /**
+     * 
+     * @param excludesMatchers the matchers for the exclude patterns
+     * @return the selectors for the dependencies to check (to be combined with an {@link AndDependencySelector})
+     */
+    Collection<DependencySelector> createDependencySelectors(List<ExcludesMatcher> excludesMatchers) {
+        return createDependencySelectors(excludesMatchers, includeOptionals, includeDirects);
+    }
+
+    /**
+     * 
+     * @param excludesMatchers the matchers for the exclude patterns
+     * @param includeOptionals whether to include optional dependencies
+     * @param includeDirects whether to include direct provided dependencies
+     * @return the selectors for the dependencies to check (to be combined with an {@link AndDependencySelector})
+     */
+    private static Collection<DependencySelector> createDependencySelectors(List<ExcludesMatcher> excludesMatchers, boolean includeOptionals, boolean includeDirects) {
         Collection<DependencySelector> depSelectors = new ArrayList<>();
         depSelectors.add(new ScopeDependencySelector("test")); // exclude transitive and direct "test" dependencies of the rootDependency (i.e. the current project)
         // add also the exclude patterns
-        if (excludes != null && !excludes.isEmpty()) {
-            Collection<Exclusion> exclusions = excludes.stream().map(RequireProvidedDependenciesInRuntimeClasspath::convertPatternToExclusion).collect(Collectors.toCollection(LinkedList::new));
-            exclusions.add(new Exclusion("*", "*", "*", "pom"));
-            depSelectors.add(new ExclusionDependencySelector(exclusions));
+        if (!excludesMatchers.isEmpty()) {
+            // the exclusions of the individual dependencies are still evaluated by the ExclusionDependencySelector
+            depSelectors.add(new ExclusionDependencySelector(Collections.singleton(new Exclusion("*", "*", "*", "pom"))));
+            depSelectors.add(new ExcludesDependencySelector(excludesMatchers));
         }
         if (!includeOptionals) {
             depSelectors.add(new OptionalDependencySelector());
@@ -126,61 +567,213 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
         if (!includeDirects) {
             depSelectors.add(new LevelAndScopeExclusionSelector(1, "provided"));
         }
-        newRepoSession.setDependencySelector(new AndDependencySelector(depSelectors));
+        return depSelectors;
+    }
 
-        // use the ones for https://maven.apache.org/guides/mini/guide-maven-classloading.html#3-plugin-classloaders
-        @SuppressWarnings("deprecation")
-        List<org.eclipse.aether.artifact.Artifact> runtimeArtifacts = project.getRuntimeArtifacts().stream().map(RepositoryUtils::toArtifact).collect(Collectors.toList());
-        // no guard supported here due to https://issues.apache.org/jira/browse/MENFORCER-488
-        getLog().debug("Collected " + runtimeArtifacts.size()+ " runtime dependencies ");
-        for (Artifact runtimeArtifact : runtimeArtifacts) {
-            getLog().debug(runtimeArtifact.toString());
+    /**
+     * Logs the metrics as one-line summary and writes them to {@link #metricsFile} (in case {@link #writeMetrics} is enabled).
+     * @param metrics the metrics
+     */
+    private void emitMetrics(RuleMetrics metrics) {
+        metrics.stop();
+        if (!writeMetrics) {
+            getLog().debug(metrics::toSummary);
+            return;
+        }
+        getLog().info(metrics.toSummary());
+        Path file = getMetricsFile();
+        try {
+            metrics.write(file);
+        } catch (IOException e) {
+            getLog().warn("Could not write metrics file " + file + ": " + e.getMessage());
         }
+    }
 
-        Dependency rootDependency = RepositoryUtils.toDependency(project.getArtifact(), null);
+    private Path getMetricsFile() {
+        if (metricsFile != null) {
+            return metricsFile.toPath();
+        }
+        return new File(project.getBuild().getDirectory(), DEFAULT_METRICS_FILE_NAME).toPath();
+    }
+
+    private static void failOnViolations(List<CheckProfile> checkProfiles, boolean isPartial) throws EnforcerRuleException {
+        if (checkProfiles.stream().anyMatch(p -> p.numViolations > 0)) {
+            ChoiceFormat dependenciesFormat = new ChoiceFormat("1#dependency|1<dependencies");
+            String prefix = isPartial ? "at least " : "";
+            String violationsPerProfile = checkProfiles.stream()
+                    .filter(p -> p.numViolations > 0)
+                    .map(p -> prefix + p.numViolations + " missing runtime " + dependenciesFormat.format(p.numViolations) + " in profile '" + p.name + "'")
+                    .collect(Collectors.joining(", "));
+            String partialMessage = isPartial ? " The check has been stopped after reaching the maximum number of violations, i.e. the report is partial and there may be more." : "";
+            throw new EnforcerRuleException("Found " + violationsPerProfile + ". Look at the warnings emitted above for the details." + partialMessage);
+        }
+    }
+
+    private static void failOnViolations(int numViolations, boolean isPartial, boolean isUnverified) throws EnforcerRuleException {
+        if (numViolations > 0) {
+            ChoiceFormat dependenciesFormat = new ChoiceFormat("1#dependency|1<dependencies");
+            String partialMessage = isPartial ? " The check has been stopped after reaching the maximum number of violations, i.e. the report is partial and there may be more." : "";
+            String unverifiedMessage = isUnverified ? " The dependencies have been checked during the collection, i.e. before conflict resolution, so these are unverified candidates which may only be reachable via versions not part of the resolved dependency graph." : "";
+            throw new EnforcerRuleException("Found " + (isPartial ? "at least " : "") + numViolations + " missing runtime " + dependenciesFormat.format(numViolations) + ". Look at the warnings emitted above for the details." + partialMessage + unverifiedMessage);
+        }
+    }
+
+    private ResultCache.Result readCachedResult(ResultCache resultCache, String resultFingerprint) {
         try {
-            DependencyNode rootDependencyNode = collectTransitiveDependencies(
-                    rootDependency, repoSystem, newRepoSession, project.getRemoteProjectRepositories());
-            int numViolations = checkForMissingArtifacts(rootDependencyNode, runtimeArtifacts);
-            if (numViolations > 0) {
-                ChoiceFormat dependenciesFormat = new ChoiceFormat("1#dependency|1<dependencies");
-                throw new EnforcerRuleException("Found " + numViolations + " missing runtime " + dependenciesFormat.format(numViolations) + ". Look at the warnings emitted above for the details.");
-            }
-        } catch (DependencyCollectionException e) {
-            // draw graph
-            StringWriter writer = new StringWriter();
-            DependencyVisitor depVisitor = new TreeDependencyVisitor(
-                    new DependencyVisitorPrinter(new PrintWriter(writer)));
-            e.getResult().getRoot().accept(depVisitor);
-            throw new EnforcerRuleException("Could not retrieve dependency metadata for project  : "
-                    + e.getMessage() + ". Partial dependency tree: " + writer.toString(), e);
+            return resultCache.read(resultFingerprint);
+        } catch (IOException e) {
+            getLog().warn("Could not read result cache file " + resultCache.getFile() + ", ignoring it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Path getResultCacheFile() {
+        File directory = resultCacheDirectory != null ? resultCacheDirectory : new File(project.getBuild().getDirectory(), DEFAULT_RESULT_CACHE_DIRECTORY_NAME);
+        return new File(directory, "requireProvidedDependenciesInRuntimeClasspath-" + project.getGroupId() + "-" + project.getArtifactId() + ".properties").toPath();
+    }
+
+    /**
+     * 
+     * @return the fingerprint of the rule's code or {@code null} in case it cannot be calculated
+     */
+    private String getCodeFingerprint() {
+        try {
+            return ResultCache.getCodeFingerprint(RequireProvidedDependenciesInRuntimeClasspath.class);
+        } catch (IOException e) {
+            getLog().warn("Could not calculate the fingerprint of the rule's code: " + e.getMessage());
+            return null;
         }
     }
 
     /**
+     * Calculates the fingerprint over all inputs of the check: the rule's code, the declared dependencies and dependency management,
+     * the runtime artifacts, the remote repositories and the rule's configuration (including the level and the report formats).
+     * SNAPSHOT dependencies from the reactor are considered by adding the fingerprint of their declared dependencies as well.
      * 
-     * @param pattern string in in the format {@code <groupId>[:<artifactId>[:<extension>[:<classifier>]]]}
-     * @return the exclusion
+     * @param codeFingerprint the fingerprint of the rule's code (see {@link ResultCache#getCodeFingerprint(Class)})
+     * @param runtimeArtifacts the runtime artifacts
+     * @param excludesMatchers the matchers for the exclude patterns
+     * @param reportFormatList the formats of the violation reports to write
+     * @return the fingerprint or {@code null} in case the project depends on SNAPSHOT artifacts from outside the reactor
+     * or declares version ranges (in its dependencies or dependency management or in the ones of reactor SNAPSHOT dependencies),
+     * as those may resolve differently without any change to the project
      */
-    private static Exclusion convertPatternToExclusion(String pattern) {
-        String[] parts = pattern.split(":");
-        if (parts.length > 4) {
-            throw new IllegalArgumentException("Pattern must contain at most three colons, but contains " + parts + ": " + pattern);
+    String calculateResultFingerprint(String codeFingerprint, List<Artifact> runtimeArtifacts, List<ExcludesMatcher> excludesMatchers,
+            List<ViolationReportWriter.Format> reportFormatList) {
+        ResultCache.Fingerprint fingerprint = new ResultCache.Fingerprint();
+        // the implementation version is not sufficient as it is the same for all builds of a SNAPSHOT
+        fingerprint.add("ruleCode", codeFingerprint);
+        for (ExcludesMatcher excludesMatcher : excludesMatchers) {
+            fingerprint.add("excludes", excludesMatcher.getPatterns());
         }
-        String groupId = parts[0];
-        String artifactId = "*";
-        String extension = "*";
-        String classifier = "*";
-        if (parts.length > 1) {
-            artifactId = parts[1];
+        fingerprint.add("includeOptionalDependencies", includeOptionals);
+        fingerprint.add("includeDirectDependencies", includeDirects);
+        fingerprint.add("versionCompatibility", versionCompatibility);
+        fingerprint.add("maxReportedPaths", maxReportedPaths);
+        fingerprint.add("maxViolations", maxViolations);
+        fingerprint.add("failFast", failFast);
+        fingerprint.add("colors", MessageUtils.isColorEnabled());
+        // the level determines the severity of the replayed messages and of the reports
+        fingerprint.add("level", getLevel());
+        fingerprint.add("reportFormats", reportFormatList);
+        for (RemoteRepository remoteRepository : project.getRemoteProjectRepositories()) {
+            fingerprint.add("repository", remoteRepository.getId() + " " + remoteRepository.getUrl());
         }
-        if (parts.length > 2) {
-            extension = parts[2];
+        Map<String, MavenProject> reactorProjects = new HashMap<>();
+        for (MavenProject reactorProject : session.getProjects()) {
+            reactorProjects.put(ArtifactUtils.key(reactorProject.getGroupId(), reactorProject.getArtifactId(), reactorProject.getVersion()), reactorProject);
         }
-        if (parts.length > 3) {
-            classifier = parts[3];
+        Set<MavenProject> fingerprintedProjects = new HashSet<>();
+        Deque<MavenProject> projectsToFingerprint = new ArrayDeque<>();
+        projectsToFingerprint.add(project);
+        for (Artifact runtimeArtifact : runtimeArtifacts) {
+            fingerprint.add("runtimeArtifact", runtimeArtifact);
+            if (!addReactorProjectForSnapshot(runtimeArtifact.getGroupId(), runtimeArtifact.getArtifactId(), runtimeArtifact.getBaseVersion(), reactorProjects, projectsToFingerprint)) {
+                return null;
+            }
         }
-        return new Exclusion(groupId, artifactId, classifier, extension);
+        while (!projectsToFingerprint.isEmpty()) {
+            MavenProject projectToFingerprint = projectsToFingerprint.removeFirst();
+            if (!fingerprintedProjects.add(projectToFingerprint)) {
+                continue;
+            }
+            fingerprint.add("project", projectToFingerprint.getId());
+            for (org.apache.maven.model.Dependency dependency : projectToFingerprint.getDependencies()) {
+                if (isVersionRange(dependency.getVersion())) {
+                    return null;
+                }
+                fingerprint.add("dependency", toFingerprintString(dependency));
+                if (!addReactorProjectForSnapshot(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(), reactorProjects, projectsToFingerprint)) {
+                    return null;
+                }
+            }
+            if (projectToFingerprint.getDependencyManagement() != null) {
+                for (org.apache.maven.model.Dependency dependency : projectToFingerprint.getDependencyManagement().getDependencies()) {
+                    if (isVersionRange(dependency.getVersion())) {
+                        return null;
+                    }
+                    fingerprint.add("managedDependency", toFingerprintString(dependency));
+                }
+            }
+        }
+        return fingerprint.build();
+    }
+
+    private static boolean addReactorProjectForSnapshot(String groupId, String artifactId, String version, Map<String, MavenProject> reactorProjects, Collection<MavenProject> projectsToFingerprint) {
+        if (!ArtifactUtils.isSnapshot(version)) {
+            return true;
+        }
+        MavenProject reactorProject = reactorProjects.get(ArtifactUtils.key(groupId, artifactId, version));
+        if (reactorProject == null) {
+            return false;
+        }
+        projectsToFingerprint.add(reactorProject);
+        return true;
+    }
+
+    /**
+     * 
+     * @param version the declared version (may be {@code null})
+     * @return {@code true} in case the version is a range (e.g. {@code [1.0,2.0)}), i.e. the resolved version may change with new releases
+     */
+    static boolean isVersionRange(String version) {
+        return version != null && (version.startsWith("[") || version.startsWith("("));
+    }
+
+    private static String toFingerprintString(org.apache.maven.model.Dependency dependency) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(dependency.getManagementKey()).append(':').append(dependency.getVersion())
+            .append(':').append(dependency.getScope()).append(':').append(dependency.isOptional());
+        for (org.apache.maven.model.Exclusion exclusion : dependency.getExclusions()) {
+            builder.append(" -").append(exclusion.getGroupId()).append(':').append(exclusion.getArtifactId());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 
+     * @param excludes the exclude patterns (may be {@code null})
+     * @param excludesFile the location of the excludes file (may be {@code null})
+     * @return the compiled matchers for the given patterns and excludes file (empty in case there are no patterns)
+     * @throws EnforcerRuleException in case the excludes file could not be loaded
+     */
+    private List<ExcludesMatcher> getExcludesMatchers(List<String> excludes, String excludesFile) throws EnforcerRuleException {
+        List<ExcludesMatcher> excludesMatchers = new ArrayList<>(2);
+        if (excludes != null && !excludes.isEmpty()) {
+            excludesMatchers.add(ExcludesMatcher.compile(excludes));
+        }
+        if (excludesFile != null) {
+            try {
+                ExcludesMatcher fileMatcher = ExcludesMatcher.load(excludesFile, project.getBasedir(), RequireProvidedDependenciesInRuntimeClasspath.class.getClassLoader());
+                getLog().debug("Loaded " + fileMatcher.getPatterns().size() + " exclude patterns from " + excludesFile);
+                if (!fileMatcher.isEmpty()) {
+                    excludesMatchers.add(fileMatcher);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                throw new EnforcerRuleException("Could not load excludes file " + excludesFile + ": " + e.getMessage(), e);
+            }
+        }
+        return excludesMatchers;
     }
 
     private static final class LevelAndScopeExclusionSelector implements DependencySelector {
@@ -218,89 +811,125 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
                 return ALL_SELECTOR;
             }
         }
-    }
-
-    private static final class DependencyVisitorPrinter implements DependencyVisitor {
-        private final PrintWriter printWriter;
-        private String indent = "";
 
-        DependencyVisitorPrinter(PrintWriter printWriter) {
-            this.printWriter = printWriter;
+        @Override
+        public int hashCode() {
+            return Objects.hash(targetLevel, targetScope, currentLevel);
         }
 
         @Override
-        public boolean visitEnter(DependencyNode dependencyNode) {
-            String scope;
-            if (dependencyNode.getDependency() != null) {
-                scope = " (" + dependencyNode.getDependency().getScope() + ")";
-            } else {
-                scope = "";
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
             }
-            printWriter.println(indent + dependencyNode.getArtifact() + scope);
-            indent += "    ";
-            return true;
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            LevelAndScopeExclusionSelector other = (LevelAndScopeExclusionSelector) obj;
+            return targetLevel == other.targetLevel && currentLevel == other.currentLevel && targetScope.equals(other.targetScope);
         }
+    }
 
-        @Override
-        public boolean visitLeave(DependencyNode dependencyNode) {
-            indent = indent.substring(0, indent.length() - 4);
-            return true;
+    private List<ViolationReportWriter.Format> getReportFormats() throws EnforcerRuleException {
+        List<ViolationReportWriter.Format> formats = new ArrayList<>();
+        if (reportFormats != null) {
+            try {
+                for (String reportFormat : reportFormats) {
+                    ViolationReportWriter.Format format = ViolationReportWriter.Format.fromName(reportFormat);
+                    if (!formats.contains(format)) {
+                        formats.add(format);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                throw new EnforcerRuleException("Invalid parameter 'reportFormats': " + e.getMessage(), e);
+            }
         }
+        return formats;
     }
 
-    private static final class MissingArtifactsDependencyVisitor implements DependencyVisitor {
-        private final List<Artifact> artifacts;
-        private final EnforcerLogger log;
-        private int numMissingArtifacts;
-        private final Deque<DependencyNode> nodeStack; // all intermediate nodes (without the root node)
-        private boolean isRoot;
-
-        MissingArtifactsDependencyVisitor(List<Artifact> artifacts, EnforcerLogger log) {
-            this.artifacts = artifacts;
-            this.log = log;
-            numMissingArtifacts = 0;
-            nodeStack = new ArrayDeque<>();
-            isRoot = true;
+    /**
+     * 
+     * @param formats the report formats
+     * @param baseName the name of the report files without extension
+     * @return the writer streaming to the report files or {@code null} in case no formats are given
+     * @throws IOException in case the report files cannot be created
+     */
+    private ViolationReportWriter openReportWriter(List<ViolationReportWriter.Format> formats, String baseName) throws IOException {
+        if (formats.isEmpty()) {
+            return null;
         }
+        String pomUri = project.getFile() != null ? project.getFile().toURI().toString() : "pom.xml";
+        return new ViolationReportWriter(getReportDirectory(), baseName, formats, pomUri, getLevel() != EnforcerLevel.WARN);
+    }
 
-        @Override
-        public boolean visitEnter(DependencyNode dependencyNode) {
-            if (isRoot) {
-                isRoot = false;
-            } else {
-                try {
-                    if (!isCompatibleArtifactContainedInList(dependencyNode.getArtifact(), artifacts, log)) {
-                        MessageBuilder msgBuilder = MessageUtils.buffer();
-                        log.warnOrError(msgBuilder.a("Dependency ").strong(dependencyNode.getDependency()).mojo(dumpIntermediatePath(nodeStack)).a(" not found as runtime dependency!").toString());
-                        numMissingArtifacts++;
-                    }
-                } catch (InvalidVersionSpecificationException e) {
-                    log.error("Invalid version given for artifact " + dependencyNode.getArtifact() + ": " + e.getCause());
-                }
-                nodeStack.addLast(dependencyNode);
-            }
-            return true;
+    /**
+     * 
+     * @param runtimeArtifacts the runtime artifacts (with their files)
+     * @param metrics the metrics to which to add the counters
+     * @return the checker or {@code null} in case {@link #classLevelCheck} is disabled or cannot be performed
+     * @throws EnforcerRuleException in case the project's classes cannot be read
+     */
+    private ClassLevelChecker createClassLevelChecker(List<Artifact> runtimeArtifacts, RuleMetrics metrics) throws EnforcerRuleException {
+        if (!classLevelCheck) {
+            return null;
+        }
+        if (failFast) {
+            getLog().warn("Ignoring parameter 'classLevelCheck' as it is not supported together with 'failFast'");
+            return null;
         }
+        Path classesDirectory = new File(project.getBuild().getOutputDirectory()).toPath();
+        if (!Files.isDirectory(classesDirectory)) {
+            getLog().warn("Performing the check only at dependency level as the classes directory " + classesDirectory + " does not exist (the rule must be executed after the compile phase)");
+            return null;
+        }
+        final Set<String> referencedClasses;
+        try {
+            referencedClasses = ClassReferenceScanner.getReferencedClasses(classesDirectory);
+        } catch (IOException e) {
+            throw new EnforcerRuleException("Could not read the classes from " + classesDirectory + ": " + e.getMessage(), e);
+        }
+        List<File> runtimeClasspath = runtimeArtifacts.stream().map(Artifact::getFile).collect(Collectors.toList());
+        ClassLevelChecker checker = new ClassLevelChecker(referencedClasses, runtimeClasspath, this::resolveArtifactFile, getLog());
+        metrics.set("referencedClasses", referencedClasses.size());
+        metrics.set("unresolvableClasses", checker.getUnresolvableClasses().size());
+        getLog().debug(() -> checker.getUnresolvableClasses().size() + " of the " + referencedClasses.size() + " classes referenced by the project are not available in the runtime classpath");
+        return checker;
+    }
 
-        @Override
-        public boolean visitLeave(DependencyNode dependencyNode) {
-            if (!nodeStack.isEmpty()) {
-                nodeStack.removeLast();
-            }
-            return true;
+    private File resolveArtifactFile(Artifact artifact) throws IOException {
+        try {
+            return repoSystem.resolveArtifact(session.getRepositorySession(), new ArtifactRequest(artifact, project.getRemoteProjectRepositories(), null))
+                    .getArtifact().getFile();
+        } catch (ArtifactResolutionException e) {
+            throw new IOException(e.getMessage(), e);
         }
+    }
 
-        public int getNumMissingArtifacts() {
-            return numMissingArtifacts;
+    private Path getReportDirectory() {
+        if (reportDirectory != null) {
+            return reportDirectory.toPath();
         }
+        return new File(project.getBuild().getDirectory(), DEFAULT_REPORT_DIRECTORY_NAME).toPath();
+    }
 
-        private static String dumpIntermediatePath(Collection<DependencyNode> path) {
-            if (path.isEmpty()) {
-                return "";
+    /**
+     * 
+     * @param rootDependency the dependency representing the current project
+     * @param repoSession the session containing the dependency selector
+     * @param reactorCache the cache to retrieve and store subtrees from/to (may be {@code null})
+     * @param metrics the metrics to which to add the timings and counters
+     * @return the root node of the collected dependency graph
+     * @throws DependencyCollectionException in case the dependency metadata could not be retrieved
+     */
+    private DependencyNode collectDependencyNodes(Dependency rootDependency, RepositorySystemSession repoSession, ReactorCache reactorCache,
+            RuleMetrics metrics) throws DependencyCollectionException {
+        try (RuleMetrics.Timer timer = metrics.start(RuleMetrics.Phase.COLLECTION)) {
+            if (reactorCache != null || parallelCollection || reuseProjectDependencyGraph) {
+                return collectTransitiveDependenciesPerDirectDependency(rootDependency, repoSession, reactorCache, metrics);
+            } else {
+                return collectTransitiveDependencies(
+                    rootDependency, repoSystem, repoSession, project.getRemoteProjectRepositories());
             }
-            return " via " + path.stream()
-                    .map(n -> n.getArtifact().toString())
-                    .collect(Collectors.joining(" -> "));
         }
     }
 
@@ -311,51 +940,170 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
             throws DependencyCollectionException {
         CollectRequest collectRequest = new CollectRequest(rootDependency, remoteRepositories);
         CollectResult collectResult = repoSystem.collectDependencies(repoSession, collectRequest);
-        
-        getLog().debug(() -> {
-            // draw full dependency graph
-            StringWriter writer = new StringWriter();
-            DependencyVisitor depVisitor = new TreeDependencyVisitor(
-                    new DependencyVisitorPrinter(new PrintWriter(writer)));
-            collectResult.getRoot().accept(depVisitor);
-            return "dependency tree: " + writer.toString();
-        });
+        logDependencyTree(collectResult.getRoot());
         return collectResult.getRoot();
     }
 
+    /**
+     * Collects the dependency graph of the current project with a separate collect request for each direct dependency.
+     * The collected subtrees are shared with other projects of the same reactor via the given cache.
+     * In case {@link #parallelCollection} is enabled the direct dependencies are collected in parallel.
+     * In case {@link #reuseProjectDependencyGraph} is enabled only the subtrees which are not part of the project's dependency graph resolved by Maven are collected.
+     * 
+     * @param rootDependency the dependency representing the current project
+     * @param repoSession the session containing the dependency selector
+     * @param reactorCache the cache to retrieve and store subtrees from/to (may be {@code null})
+     * @param metrics the metrics to which to add the counters of the collection
+     * @return the root node of the dependency graph
+     * @throws DependencyCollectionException in case the dependency metadata could not be retrieved
+     */
+    DependencyNode collectTransitiveDependenciesPerDirectDependency(Dependency rootDependency,
+            RepositorySystemSession repoSession, ReactorCache reactorCache, RuleMetrics metrics) throws DependencyCollectionException {
+        ArtifactTypeRegistry typeRegistry = repoSession.getArtifactTypeRegistry();
+        List<Dependency> directDependencies = project.getDependencies().stream()
+                .map(d -> RepositoryUtils.toDependency(d, typeRegistry))
+                .collect(Collectors.toList());
+        List<Dependency> managedDependencies = project.getDependencyManagement() != null ? 
+                project.getDependencyManagement().getDependencies().stream()
+                    .map(d -> RepositoryUtils.toDependency(d, typeRegistry))
+                    .collect(Collectors.toList()) : Collections.emptyList();
+        int parallelism = parallelCollection ? Math.max(1, parallelCollectionThreads) : 1;
+        SubtreeDependencyCollector collector = new SubtreeDependencyCollector(repoSystem, repoSession, project.getRemoteProjectRepositories(), reactorCache, parallelism);
+        ProjectGraphDependencyCollector projectGraphCollector = reuseProjectDependencyGraph ? newProjectGraphDependencyCollector(repoSession, collector) : null;
+        final DependencyNode rootNode;
+        if (projectGraphCollector != null) {
+            rootNode = projectGraphCollector.collect(rootDependency, directDependencies, managedDependencies);
+            metrics.set("reusedProjectGraphNodes", projectGraphCollector.getNumReusedNodes());
+            metrics.set("readDescriptors", projectGraphCollector.getNumReadDescriptors());
+            getLog().debug("Reused " + projectGraphCollector.getNumReusedNodes() + " nodes from the project's dependency graph, collected "
+                + collector.getNumCollectedSubtrees() + " additional subtrees with " + collector.getNumCollectRequests() + " collect request(s)");
+            if (reactorCache != null) {
+                getLog().debug("The reactor cache is not used for the subtrees which are not part of the project's dependency graph");
+            }
+        } else {
+            rootNode = collector.collect(rootDependency, directDependencies, managedDependencies);
+            if (reactorCache != null) {
+                getLog().debug("Reused " + (collector.getNumSubtrees() - collector.getNumCollectedSubtrees()) + " of " + collector.getNumSubtrees()
+                    + " direct dependency subtrees from the reactor cache (which now contains " + reactorCache.getNumNodes() + " nodes)");
+            }
+        }
+        metrics.set("subtrees", collector.getNumSubtrees());
+        metrics.set("collectedSubtrees", collector.getNumCollectedSubtrees());
+        metrics.set("collectRequests", collector.getNumCollectRequests());
+        if (reactorCache != null) {
+            metrics.set("reactorCacheHits", collector.getNumSubtrees() - collector.getNumCollectedSubtrees());
+        }
+        logDependencyTree(rootNode);
+        return rootNode;
+    }
+
+    /**
+     * 
+     * @param repoSession the session containing the dependency selector
+     * @param subtreeCollector the collector for the subtrees which are not part of the project's dependency graph
+     * @return the collector or {@code null} in case the project's dependency graph is not available
+     */
+    private ProjectGraphDependencyCollector newProjectGraphDependencyCollector(RepositorySystemSession repoSession, SubtreeDependencyCollector subtreeCollector) {
+        if (project.getArtifacts().isEmpty() && !project.getDependencies().isEmpty()) {
+            getLog().debug("The project's dependency graph has not been resolved, collecting it from scratch");
+            return null;
+        }
+        try {
+            return new ProjectGraphDependencyCollector(repoSystem, repoSession, project.getRemoteProjectRepositories(), subtreeCollector,
+                    project.getArtifacts(), project.getArtifact().getId());
+        } catch (IllegalArgumentException e) {
+            getLog().debug("The project's dependency graph cannot be reconstructed, collecting it from scratch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void logDependencyTree(DependencyNode rootNode) {
+        // the supplier is only called with debug enabled, i.e. the tree is not rendered otherwise
+        getLog().debug(() -> writeDependencyTree(rootNode, "Dependency tree"));
+    }
+
+    /**
+     * Writes the dependency tree to {@link #dependencyTreeFile} or to the debug log in case the file cannot be written.
+     * @param rootNode the root node of the tree
+     * @param description the description of the tree used in the returned summary
+     * @return a one-line summary containing the path of the written file
+     */
+    private String writeDependencyTree(DependencyNode rootNode, String description) {
+        DependencyTreeRenderer renderer = new DependencyTreeRenderer(dependencyTreeMaxDepth, dependencyTreeMaxNodes);
+        Path file = getDependencyTreeFile();
+        String summary;
+        try {
+            renderer.render(rootNode, file);
+            summary = description + " written to " + file;
+        } catch (IOException e) {
+            getLog().warn("Could not write dependency tree file " + file + ": " + e.getMessage());
+            renderer.render(rootNode, getLog());
+            summary = description + " written to the debug log";
+        }
+        return summary + " (" + renderer.getNumRenderedNodes() + " nodes" + (renderer.isTruncated() ? ", truncated" : "") + ")";
+    }
+
+    private Path getDependencyTreeFile() {
+        if (dependencyTreeFile != null) {
+            return dependencyTreeFile.toPath();
+        }
+        return new File(project.getBuild().getDirectory(), DEFAULT_DEPENDENCY_TREE_FILE_NAME).toPath();
+    }
+
     protected int checkForMissingArtifacts(DependencyNode rootDependencyNode, List<Artifact> runtimeArtifacts) {
-        MissingArtifactsDependencyVisitor depVisitor = new MissingArtifactsDependencyVisitor(runtimeArtifacts, getLog());
-        rootDependencyNode.accept(depVisitor);
-        return depVisitor.getNumMissingArtifacts();
+        return checkForMissingArtifacts(CompactDependencyGraph.of(rootDependencyNode), new RuntimeArtifactsIndex(runtimeArtifacts), new VersionCompatibilityChecker(versionCompatibility), getLog(), maxViolations, null, null, null)
+                .getNumMissingArtifacts();
+    }
+
+    MissingArtifactsDependencyVisitor checkForMissingArtifacts(CompactDependencyGraph graph, RuntimeArtifactsIndex runtimeArtifactsIndex,
+            VersionCompatibilityChecker versionCompatibilityChecker, EnforcerLogger log, int maxViolations, ViolationReportWriter reportWriter,
+            ClassLevelChecker classLevelChecker, ReactorCache.ArtifactVerdictCache artifactVerdictCache) {
+        MissingArtifactsDependencyVisitor depVisitor = new MissingArtifactsDependencyVisitor(runtimeArtifactsIndex, versionCompatibilityChecker, log, maxReportedPaths, maxViolations,
+                reportWriter, classLevelChecker, artifactVerdictCache);
+        depVisitor.check(graph);
+        log.debug(() -> "Checked " + depVisitor.getNumCheckedArtifacts() + " distinct dependencies");
+        return depVisitor;
     }
 
     protected static boolean isCompatibleArtifactContainedInList(Artifact artifact,
             List<Artifact> artifacts, EnforcerLogger log) throws InvalidVersionSpecificationException {
-        for (Artifact artifactInList : artifacts) {
-            if (areArtifactsEqualDisregardingVersion(artifact, artifactInList)) {
-                // check version compatibility
-                if (isVersionCompatible(artifact.getVersion(), artifactInList.getVersion())) {
-                    return true;
-                } else {
-                    MessageBuilder msgBuilder = MessageUtils.buffer();
-                    log.warnOrError("Found provided dependency " + msgBuilder.strong(artifact).a(" only with potentially incompatible version ").strong(artifactInList.getVersion()).toString() + " in runtime classpath");
-                }
+        return isCompatibleArtifactContainedInIndex(artifact, new RuntimeArtifactsIndex(artifacts), new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER), log);
+    }
+
+    static boolean isCompatibleArtifactContainedInIndex(Artifact artifact, RuntimeArtifactsIndex runtimeArtifactsIndex,
+            VersionCompatibilityChecker versionCompatibilityChecker, EnforcerLogger log) throws InvalidVersionSpecificationException {
+        List<String> incompatibleVersionMessages = new ArrayList<>(0);
+        boolean isContained = isCompatibleArtifactContainedInIndex(artifact, runtimeArtifactsIndex, versionCompatibilityChecker, incompatibleVersionMessages);
+        incompatibleVersionMessages.forEach(log::warnOrError);
+        return isContained;
+    }
+
+    /**
+     * 
+     * @param artifact the artifact to look up
+     * @param runtimeArtifactsIndex the runtime classpath
+     * @param versionCompatibilityChecker the checker for the versions
+     * @param incompatibleVersionMessages the list to which to add a message for each incompatible version found before a compatible one (instead of logging it)
+     * @return {@code true} in case the runtime classpath contains the artifact with a compatible version, otherwise {@code false}
+     * @throws InvalidVersionSpecificationException in case the artifact's version is invalid
+     */
+    static boolean isCompatibleArtifactContainedInIndex(Artifact artifact, RuntimeArtifactsIndex runtimeArtifactsIndex,
+            VersionCompatibilityChecker versionCompatibilityChecker, List<String> incompatibleVersionMessages) throws InvalidVersionSpecificationException {
+        // only artifacts sharing groupId, artifactId, classifier and extension are returned by the index
+        for (RuntimeArtifactsIndex.Entry entry : runtimeArtifactsIndex.get(artifact)) {
+            // check version compatibility
+            if (versionCompatibilityChecker.isCompatible(artifact.getVersion(), entry.getVersion())) {
+                return true;
+            } else {
+                MessageBuilder msgBuilder = MessageUtils.buffer();
+                incompatibleVersionMessages.add("Found provided dependency " + msgBuilder.strong(artifact).a(" only with potentially incompatible version ").strong(entry.getArtifact().getVersion()).toString() + " in runtime classpath");
             }
         }
         return false;
     }
 
     protected static boolean isVersionCompatible(String requiredVersion, String providedVersion) throws InvalidVersionSpecificationException {
-       ArtifactVersion provided = new DefaultArtifactVersion(providedVersion);
-       VersionRange required = VersionRange.createFromVersionSpec(requiredVersion);
-       
-       // is it really a range?
-       if (required.getRecommendedVersion() == null) {
-           return required.containsVersion(provided);
-       } else {
-           // if only one version assume that versions with a higher minor version are compatible
-           return required.getRecommendedVersion().getMajorVersion() == provided.getMajorVersion() && required.getRecommendedVersion().getMinorVersion() <= provided.getMinorVersion();
-       }
+        return VersionCompatibilityStrategy.SEMVER.isCompatible(VersionRange.createFromVersionSpec(requiredVersion), new DefaultArtifactVersion(providedVersion));
     }
 
     /**
@@ -375,6 +1123,10 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
         this.excludes = theExcludes;
     }
 
+    public void setExcludesFile(String excludesFile) {
+        this.excludesFile = excludesFile;
+    }
+
     public void setIncludeOptionalDependencies(boolean includeOptionals) {
         this.includeOptionals = includeOptionals;
     }
@@ -382,4 +1134,185 @@ public class RequireProvidedDependenciesInRuntimeClasspath extends AbstractEnfor
     public void setIncludeDirectDependencies(boolean includeDirects) {
         this.includeDirects = includeDirects;
     }
+
+    /**
+     * 
+     * @param versionCompatibility one of {@code strict}, {@code semver} or {@code osgi}
+     */
+    public void setVersionCompatibility(String versionCompatibility) {
+        this.versionCompatibility = VersionCompatibilityStrategy.fromString(versionCompatibility);
+    }
+
+    public void setUseResultCache(boolean useResultCache) {
+        this.useResultCache = useResultCache;
+    }
+
+    public void setResultCacheDirectory(File resultCacheDirectory) {
+        this.resultCacheDirectory = resultCacheDirectory;
+    }
+
+    public void setUseReactorCache(boolean useReactorCache) {
+        this.useReactorCache = useReactorCache;
+    }
+
+    public void setReactorCacheMaxNodes(int reactorCacheMaxNodes) {
+        this.reactorCacheMaxNodes = reactorCacheMaxNodes;
+    }
+
+    public void setParallelCollection(boolean parallelCollection) {
+        this.parallelCollection = parallelCollection;
+    }
+
+    public void setParallelCollectionThreads(int parallelCollectionThreads) {
+        this.parallelCollectionThreads = parallelCollectionThreads;
+    }
+
+    public void setReuseProjectDependencyGraph(boolean reuseProjectDependencyGraph) {
+        this.reuseProjectDependencyGraph = reuseProjectDependencyGraph;
+    }
+
+    public void setMaxReportedPaths(int maxReportedPaths) {
+        this.maxReportedPaths = maxReportedPaths;
+    }
+
+    public void setMaxViolations(int maxViolations) {
+        this.maxViolations = maxViolations;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public void setWriteMetrics(boolean writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public void setDependencyTreeFile(File dependencyTreeFile) {
+        this.dependencyTreeFile = dependencyTreeFile;
+    }
+
+    public void setDependencyTreeMaxDepth(int dependencyTreeMaxDepth) {
+        this.dependencyTreeMaxDepth = dependencyTreeMaxDepth;
+    }
+
+    public void setDependencyTreeMaxNodes(int dependencyTreeMaxNodes) {
+        this.dependencyTreeMaxNodes = dependencyTreeMaxNodes;
+    }
+
+    public void setReportFormats(List<String> reportFormats) {
+        this.reportFormats = reportFormats;
+    }
+
+    public void setReportDirectory(File reportDirectory) {
+        this.reportDirectory = reportDirectory;
+    }
+
+    public void setClassLevelCheck(boolean classLevelCheck) {
+        this.classLevelCheck = classLevelCheck;
+    }
+
+    public void setProfiles(List<Profile> profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * The effective configuration of a profile to check together with its result.
+     * The rule's own configuration is represented by an implicit profile without name.
+     */
+    private static final class CheckProfile {
+        private final String name;
+        private final List<ExcludesMatcher> excludesMatchers;
+        private final Collection<DependencySelector> selectors;
+        private final VersionCompatibilityStrategy versionCompatibility;
+        private int numViolations;
+
+        CheckProfile(String name, List<ExcludesMatcher> excludesMatchers, Collection<DependencySelector> selectors, VersionCompatibilityStrategy versionCompatibility) {
+            this.name = name;
+            this.excludesMatchers = excludesMatchers;
+            this.selectors = selectors;
+            this.versionCompatibility = versionCompatibility;
+        }
+
+        DependencySelector getSelector() {
+            return new AndDependencySelector(selectors);
+        }
+
+        String getMetricsPrefix() {
+            return name != null ? "profile." + name + "." : "";
+        }
+
+        String getReportFileBaseName() {
+            return name != null ? REPORT_FILE_BASE_NAME + "-" + name : REPORT_FILE_BASE_NAME;
+        }
+    }
+
+    /**
+     * A named set of excludes and flags for {@link RequireProvidedDependenciesInRuntimeClasspath#profiles}.
+     * All parameters which are not set are taken over from the rule.
+     */
+    public static class Profile {
+
+        private String name;
+        private List<String> excludes;
+        private String excludesFile;
+        private Boolean includeOptionalDependencies;
+        private Boolean includeDirectDependencies;
+        private String versionCompatibility;
+
+        String getName() {
+            return name;
+        }
+
+        List<String> getExcludes() {
+            return excludes;
+        }
+
+        String getExcludesFile() {
+            return excludesFile;
+        }
+
+        Boolean getIncludeOptionalDependencies() {
+            return includeOptionalDependencies;
+        }
+
+        Boolean getIncludeDirectDependencies() {
+            return includeDirectDependencies;
+        }
+
+        String getVersionCompatibility() {
+            return versionCompatibility;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setExcludes(List<String> excludes) {
+            this.excludes = excludes;
+        }
+
+        public void setExcludesFile(String excludesFile) {
+            this.excludesFile = excludesFile;
+        }
+
+        public void setIncludeOptionalDependencies(boolean includeOptionalDependencies) {
+            this.includeOptionalDependencies = includeOptionalDependencies;
+        }
+
+        public void setIncludeDirectDependencies(boolean includeDirectDependencies) {
+            this.includeDirectDependencies = includeDirectDependencies;
+        }
+
+        /**
+         * 
+         * @param versionCompatibility one of {@code strict}, {@code semver} or {@code osgi}
+         */
+        public void setVersionCompatibility(String versionCompatibility) {
+            this.versionCompatibility = versionCompatibility;
+        }
+    }
 }
\ No newline at end of file
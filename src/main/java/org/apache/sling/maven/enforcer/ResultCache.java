@@ -0,0 +1,285 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.enforcer.rule.api.EnforcerLogger;
+
+/**
+ * Persistent cache for the outcome of a rule execution.
+ * The file contains the fingerprint of all inputs of the check and the outcome, i.e. the number of violations and all messages emitted
+ * for them. It is only valid as long as the fingerprint does not change.
+ */
+final class ResultCache {
+
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_NUM_VIOLATIONS = "violations";
+    private static final String KEY_NUM_MESSAGES = "messages";
+    private static final String KEY_PREFIX_MESSAGE = "message.";
+
+    /** the fingerprints of all JAR files hashed via {@link #getCodeFingerprint(Class)}, keyed by path */
+    private static final ConcurrentMap<Path, CachedCodeFingerprint> CODE_FINGERPRINTS = new ConcurrentHashMap<>();
+
+    private final Path file;
+
+    ResultCache(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * 
+     * @param fingerprint the fingerprint of the current inputs
+     * @return the cached result or {@code null} in case there is no cached result for the given fingerprint
+     * @throws IOException in case the cache file cannot be read
+     */
+    Result read(String fingerprint) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!fingerprint.equals(properties.getProperty(KEY_FINGERPRINT))) {
+            return null;
+        }
+        try {
+            int numViolations = Integer.parseInt(properties.getProperty(KEY_NUM_VIOLATIONS));
+            int numMessages = Integer.parseInt(properties.getProperty(KEY_NUM_MESSAGES));
+            List<Message> messages = new ArrayList<>(numMessages);
+            for (int i = 0; i < numMessages; i++) {
+                Message.Level level = Message.Level.valueOf(properties.getProperty(KEY_PREFIX_MESSAGE + i + ".level"));
+                messages.add(new Message(level, properties.getProperty(KEY_PREFIX_MESSAGE + i + ".text")));
+            }
+            return new Result(numViolations, messages);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Invalid result cache file " + file, e);
+        }
+    }
+
+    /**
+     * Writes the result atomically, i.e. concurrent readers either see the old or the new result.
+     * @param fingerprint the fingerprint of the current inputs
+     * @param result the result
+     * @throws IOException in case the cache file cannot be written
+     */
+    void write(String fingerprint, Result result) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_FINGERPRINT, fingerprint);
+        properties.setProperty(KEY_NUM_VIOLATIONS, Integer.toString(result.getNumViolations()));
+        properties.setProperty(KEY_NUM_MESSAGES, Integer.toString(result.getMessages().size()));
+        int i = 0;
+        for (Message message : result.getMessages()) {
+            properties.setProperty(KEY_PREFIX_MESSAGE + i + ".level", message.getLevel().name());
+            properties.setProperty(KEY_PREFIX_MESSAGE + i + ".text", message.getText());
+            i++;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tmpFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(tmpFile)) {
+                properties.store(output, null);
+            }
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the code containing the given class. This is the hash over the JAR file containing the class
+     * or, in case the class is loaded from a directory (e.g. from within an IDE), the hash over all class files of its package.
+     * In contrast to the implementation version this also changes with every rebuild of a SNAPSHOT.
+     * The fingerprints of JAR files are cached for the lifetime of the JVM, the files are only hashed again once they have been modified.
+     *
+     * @param clazz the class
+     * @return the fingerprint or {@code null} in case the code is not loaded from the file system
+     * @throws IOException in case the code cannot be read
+     */
+    static String getCodeFingerprint(Class<?> clazz) throws IOException {
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location == null || !"file".equals(location.getProtocol())) {
+            return null;
+        }
+        final Path path;
+        try {
+            path = Paths.get(location.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+        if (Files.isDirectory(path)) {
+            Path packageDirectory = path.resolve(clazz.getPackage().getName().replace('.', '/'));
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.list(packageDirectory)) {
+                classFiles = files.filter(f -> f.getFileName().toString().endsWith(".class")).sorted().collect(Collectors.toList());
+            }
+            Fingerprint fingerprint = new Fingerprint();
+            for (Path classFile : classFiles) {
+                fingerprint.add(classFile.getFileName().toString(), Files.readAllBytes(classFile));
+            }
+            return fingerprint.build();
+        }
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        // detect modifications in long running JVMs
+        long version = Files.getLastModifiedTime(path).toMillis() ^ (Files.size(path) << 32);
+        CachedCodeFingerprint cachedFingerprint = CODE_FINGERPRINTS.get(path);
+        if (cachedFingerprint == null || cachedFingerprint.version != version) {
+            cachedFingerprint = new CachedCodeFingerprint(version, new Fingerprint().add(path.getFileName().toString(), Files.readAllBytes(path)).build());
+            CODE_FINGERPRINTS.put(path, cachedFingerprint);
+        }
+        return cachedFingerprint.fingerprint;
+    }
+
+    private static final class CachedCodeFingerprint {
+        private final long version;
+        private final String fingerprint;
+
+        CachedCodeFingerprint(long version, String fingerprint) {
+            this.version = version;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    static final class Result {
+        private final int numViolations;
+        private final List<Message> messages;
+
+        Result(int numViolations, List<Message> messages) {
+            this.numViolations = numViolations;
+            this.messages = Collections.unmodifiableList(messages);
+        }
+
+        int getNumViolations() {
+            return numViolations;
+        }
+
+        List<Message> getMessages() {
+            return messages;
+        }
+
+        void replay(EnforcerLogger log) {
+            for (Message message : messages) {
+                message.replay(log);
+            }
+        }
+    }
+
+    static final class Message {
+        enum Level {
+            WARN_OR_ERROR,
+            ERROR
+        }
+
+        private final Level level;
+        private final String text;
+
+        Message(Level level, String text) {
+            this.level = level;
+            this.text = text;
+        }
+
+        Level getLevel() {
+            return level;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        void replay(EnforcerLogger log) {
+            if (level == Level.ERROR) {
+                log.error(text);
+            } else {
+                log.warnOrError(text);
+            }
+        }
+    }
+
+    /** Calculates a SHA-256 hash over all given values (in order). */
+    static final class Fingerprint {
+        private final MessageDigest digest;
+
+        Fingerprint() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported by this JRE", e);
+            }
+        }
+
+        Fingerprint add(String key, Object value) {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '=');
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return this;
+        }
+
+        Fingerprint add(String key, byte[] value) {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '=');
+            digest.update(value);
+            digest.update((byte) '\n');
+            return this;
+        }
+
+        String build() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of the individual phases and counters of a single rule execution.
+ * Can be emitted as a one-line summary or written as JSON file.
+ * This class is not thread-safe.
+ */
+final class RuleMetrics {
+
+    enum Phase {
+        RESULT_CACHE("resultCache"),
+        SELECTOR_SETUP("selectorSetup"),
+        INDEXING("indexing"),
+        COLLECTION("collection"),
+        CONVERSION("conversion"),
+        TRAVERSAL("traversal"),
+        REPORTING("reporting");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private final String projectId;
+    private final long startNanos;
+    private final Map<Phase, Long> phaseNanos;
+    private final Map<String, Long> counters;
+    private long totalNanos;
+
+    RuleMetrics(String projectId) {
+        this.projectId = projectId;
+        this.startNanos = System.nanoTime();
+        this.phaseNanos = new EnumMap<>(Phase.class);
+        this.counters = new LinkedHashMap<>();
+    }
+
+    /**
+     * Starts measuring the given phase. The time is added to the phase once the returned timer is closed.
+     * @param phase the phase
+     * @return the timer
+     */
+    Timer start(Phase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Adds the given time to a phase.
+     * @param phase the phase
+     * @param nanos the time in nanoseconds
+     */
+    void add(Phase phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Sets the value of a counter (counters are emitted in the order in which they have been set first).
+     * @param name the name of the counter
+     * @param value the value
+     */
+    void set(String name, long value) {
+        counters.put(name, value);
+    }
+
+    /**
+     * Stops the measurement of the total time.
+     */
+    void stop() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    long getPhaseMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos.getOrDefault(phase, 0L));
+    }
+
+    Long getCounter(String name) {
+        return counters.get(name);
+    }
+
+    /**
+     *
+     * @return a one-line summary of all timings and counters
+     */
+    String toSummary() {
+        StringBuilder summary = new StringBuilder("Metrics: total=").append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append("ms");
+        for (Phase phase : phaseNanos.keySet()) {
+            summary.append(", ").append(phase.name).append('=').append(getPhaseMillis(phase)).append("ms");
+        }
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            summary.append(", ").append(counter.getKey()).append('=').append(counter.getValue());
+        }
+        return summary.toString();
+    }
+
+    /**
+     *
+     * @param file the file to write the metrics to (parent directories are created if necessary)
+     * @throws IOException in case the file cannot be written
+     */
+    void write(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"project\": ").append(Json.quote(projectId)).append(",\n");
+        json.append("  \"totalMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(totalNanos)).append(",\n");
+        json.append("  \"phaseMillis\": {");
+        String separator = "\n";
+        for (Phase phase : phaseNanos.keySet()) {
+            json.append(separator).append("    ").append(Json.quote(phase.name)).append(": ").append(getPhaseMillis(phase));
+            separator = ",\n";
+        }
+        json.append(phaseNanos.isEmpty() ? "" : "\n  ").append("},\n");
+        json.append("  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(separator).append("    ").append(Json.quote(counter.getKey())).append(": ").append(counter.getValue());
+            separator = ",\n";
+        }
+        json.append(counters.isEmpty() ? "" : "\n  ").append("}\n");
+        return json.append("}\n").toString();
+    }
+
+    final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final long start;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            add(phase, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.eclipse.aether.artifact.Artifact;
+
+/**
+ * Index of the runtime classpath built once per rule execution.
+ * Artifacts are keyed by groupId and artifactId and then matched by extension and classifier (i.e. everything but the version)
+ * so that each node of the dependency graph can be matched with two hash lookups without allocating a composite key.
+ * The versions of the runtime artifacts are parsed only once while building the index.
+ */
+final class RuntimeArtifactsIndex {
+
+    /** first level key is the groupId, second level key the artifactId */
+    private final Map<String, Map<String, List<EntryGroup>>> entryGroups;
+    private final List<String> coordinates;
+
+    RuntimeArtifactsIndex(Collection<Artifact> artifacts) {
+        entryGroups = new HashMap<>();
+        coordinates = new ArrayList<>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            List<EntryGroup> entryGroupsForArtifactId = entryGroups.computeIfAbsent(artifact.getGroupId(), k -> new HashMap<>())
+                    .computeIfAbsent(artifact.getArtifactId(), k -> new ArrayList<>(1));
+            EntryGroup entryGroup = findEntryGroup(entryGroupsForArtifactId, artifact);
+            if (entryGroup == null) {
+                entryGroup = new EntryGroup(artifact);
+                entryGroupsForArtifactId.add(entryGroup);
+            }
+            // keep the classpath order for artifacts sharing the same key
+            entryGroup.entries.add(new Entry(artifact));
+            coordinates.add(artifact.toString());
+        }
+    }
+
+    /**
+     *
+     * @param artifact the artifact to look up
+     * @return all runtime artifacts which share groupId, artifactId, classifier and extension with the given artifact in classpath order (never {@code null})
+     */
+    List<Entry> get(Artifact artifact) {
+        Map<String, List<EntryGroup>> entryGroupsForGroupId = entryGroups.get(artifact.getGroupId());
+        if (entryGroupsForGroupId != null) {
+            EntryGroup entryGroup = findEntryGroup(entryGroupsForGroupId.get(artifact.getArtifactId()), artifact);
+            if (entryGroup != null) {
+                return entryGroup.entries;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static EntryGroup findEntryGroup(List<EntryGroup> entryGroupsForArtifactId, Artifact artifact) {
+        if (entryGroupsForArtifactId != null) {
+            // usually only a single group, no iterator to stay allocation-free
+            for (int i = 0; i < entryGroupsForArtifactId.size(); i++) {
+                EntryGroup entryGroup = entryGroupsForArtifactId.get(i);
+                if (entryGroup.matches(artifact)) {
+                    return entryGroup;
+                }
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return coordinates.size();
+    }
+
+    /**
+     *
+     * @return the coordinates of all runtime artifacts in classpath order, i.e. indices with equal coordinates return the same results
+     */
+    List<String> getCoordinates() {
+        return Collections.unmodifiableList(coordinates);
+    }
+
+    /**
+     *
+     * @param artifact the artifact
+     * @return the key consisting of groupId, artifactId, classifier and extension
+     * @see RequireProvidedDependenciesInRuntimeClasspath#areArtifactsEqualDisregardingVersion(Artifact, Artifact)
+     */
+    static String key(Artifact artifact) {
+        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getExtension() + ':' + Objects.toString(artifact.getClassifier(), "");
+    }
+
+    /** The runtime artifacts sharing groupId, artifactId, extension and classifier */
+    private static final class EntryGroup {
+        private final String extension;
+        private final String classifier;
+        private final List<Entry> entries;
+
+        EntryGroup(Artifact artifact) {
+            this.extension = artifact.getExtension();
+            this.classifier = Objects.toString(artifact.getClassifier(), "");
+            this.entries = new ArrayList<>(1);
+        }
+
+        boolean matches(Artifact artifact) {
+            return Objects.equals(extension, artifact.getExtension()) && classifier.equals(Objects.toString(artifact.getClassifier(), ""));
+        }
+    }
+
+    static final class Entry {
+        private final Artifact artifact;
+        private final ArtifactVersion version;
+
+        Entry(Artifact artifact) {
+            this.artifact = artifact;
+            this.version = new DefaultArtifactVersion(artifact.getVersion());
+        }
+
+        Artifact getArtifact() {
+            return artifact;
+        }
+
+        ArtifactVersion getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,856 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.collection.DependencyGraphTransformationContext;
+import org.eclipse.aether.collection.DependencyGraphTransformer;
+import org.eclipse.aether.collection.DependencyManagement;
+import org.eclipse.aether.collection.DependencyManager;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.collection.DependencyTraverser;
+import org.eclipse.aether.collection.VersionFilter;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.VersionScheme;
+
+/**
+ * Collects the dependency graph of a project with one collect request per direct dependency (instead of a single one for the project).
+ * The selector, manager, traverser and version filter of the given session are derived for the project level first, so that
+ * each subtree is collected exactly as it would be as part of the project's graph.
+ * The subtrees are merged below a new root node afterwards and the session's graph transformer (e.g. for conflict resolution)
+ * is applied to the merged graph.
+ * <p>
+ * Collecting each direct dependency separately allows to reuse the subtrees from a {@link ReactorCache} and to collect them in parallel.
+ * As the session's {@link org.eclipse.aether.RepositoryCache} is shared by all collect requests, the descriptor of an artifact
+ * occurring in multiple subtrees is still only read once.
+ */
+final class SubtreeDependencyCollector {
+
+    private static final VersionScheme VERSION_SCHEME = new GenericVersionScheme();
+
+    private final RepositorySystem repoSystem;
+    private final RepositorySystemSession repoSession;
+    private final List<RemoteRepository> remoteRepositories;
+    private final ReactorCache reactorCache;
+    private final int parallelism;
+    private final AtomicInteger numCollectedSubtrees;
+    private final AtomicInteger numCollectRequests;
+    private int numSubtrees;
+
+    /**
+     * 
+     * @param repoSystem the repository system
+     * @param repoSession the session containing the selector, manager, traverser, version filter and transformer to use
+     * @param remoteRepositories the remote repositories
+     * @param reactorCache the cache for subtrees (may be {@code null})
+     * @param parallelism the maximum number of subtrees to collect in parallel (1 to collect sequentially in the calling thread)
+     */
+    SubtreeDependencyCollector(RepositorySystem repoSystem, RepositorySystemSession repoSession,
+            List<RemoteRepository> remoteRepositories, ReactorCache reactorCache, int parallelism) {
+        this.repoSystem = repoSystem;
+        this.repoSession = repoSession;
+        this.remoteRepositories = remoteRepositories;
+        this.reactorCache = reactorCache;
+        this.parallelism = parallelism;
+        this.numCollectedSubtrees = new AtomicInteger();
+        this.numCollectRequests = new AtomicInteger();
+    }
+
+    /**
+     * 
+     * @return the number of subtrees of the last collected graph
+     */
+    int getNumSubtrees() {
+        return numSubtrees;
+    }
+
+    /**
+     * 
+     * @return the number of subtrees which have been collected (i.e. which have not been reused from the reactor cache) for the last collected graph
+     */
+    int getNumCollectedSubtrees() {
+        return numCollectedSubtrees.get();
+    }
+
+    /**
+     * 
+     * @return the number of collect requests issued for the last collected graph
+     */
+    int getNumCollectRequests() {
+        return numCollectRequests.get();
+    }
+
+    /**
+     * 
+     * @param rootDependency the dependency representing the project
+     * @param directDependencies the project's direct dependencies
+     * @param managedDependencies the project's dependency management
+     * @return the root node of the merged and transformed dependency graph
+     * @throws DependencyCollectionException in case the metadata of at least one dependency could not be retrieved, contains the partial graph
+     */
+    DependencyNode collect(Dependency rootDependency, List<Dependency> directDependencies, List<Dependency> managedDependencies) throws DependencyCollectionException {
+        CollectionState projectState = CollectionState.of(repoSession)
+                .derive(new SimpleDependencyCollectionContext(repoSession, rootDependency, managedDependencies));
+        DefaultDependencyNode rootNode = newNode(rootDependency);
+        rootNode.setRepositories(remoteRepositories);
+        try (Batch batch = newBatch(rootNode)) {
+            for (Dependency directDependency : directDependencies) {
+                if (projectState.selects(directDependency)) {
+                    batch.add(rootNode, directDependency, projectState);
+                }
+            }
+            batch.await();
+            return batch.transform();
+        }
+    }
+
+    /**
+     * 
+     * @param rootNode the root node of the graph to which the subtrees are added
+     * @return a new batch for collecting multiple subtrees (in parallel)
+     */
+    Batch newBatch(DependencyNode rootNode) {
+        return new Batch(rootNode, false);
+    }
+
+    /**
+     * In contrast to {@link #newBatch(DependencyNode)} the subtrees are not collected one by one but all subtrees whose parents
+     * have the same state are collected with a single collect request (without root dependency).
+     * Therefore subtrees shared between them (e.g. diamonds) are only collected once. The reactor cache is not used for those subtrees.
+     * 
+     * @param rootNode the root node of the graph to which the subtrees are added
+     * @return a new batch for collecting multiple subtrees with as few collect requests as possible
+     */
+    Batch newGroupedBatch(DependencyNode rootNode) {
+        return new Batch(rootNode, true);
+    }
+
+    /**
+     * 
+     * @param dependency the dependency
+     * @return a new node with a mutable list of children
+     */
+    static DefaultDependencyNode newNode(Dependency dependency) {
+        DefaultDependencyNode node = new DefaultDependencyNode(dependency);
+        node.setChildren(new ArrayList<>());
+        setVersionConstraint(node);
+        return node;
+    }
+
+    /**
+     * Records the management of version, scope and optional flag in the same way as the repository system does
+     * (in case {@link DependencyManagerUtils#CONFIG_PROP_VERBOSE} is set), i.e. via the managed bits and the premanaged node data.
+     * 
+     * @param node the node
+     * @param premanagedDependency the dependency before management
+     * @param managedDependency the dependency after management
+     */
+    static void setPremanagedData(DefaultDependencyNode node, Dependency premanagedDependency, Dependency managedDependency) {
+        int managedBits = node.getManagedBits();
+        if (!premanagedDependency.getArtifact().getVersion().equals(managedDependency.getArtifact().getVersion())) {
+            managedBits |= DependencyNode.MANAGED_VERSION;
+            node.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_VERSION, premanagedDependency.getArtifact().getVersion());
+        }
+        if (!premanagedDependency.getScope().equals(managedDependency.getScope())) {
+            managedBits |= DependencyNode.MANAGED_SCOPE;
+            node.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_SCOPE, premanagedDependency.getScope());
+        }
+        if (!Objects.equals(premanagedDependency.getOptional(), managedDependency.getOptional())) {
+            managedBits |= DependencyNode.MANAGED_OPTIONAL;
+            node.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_OPTIONAL, premanagedDependency.getOptional());
+        }
+        node.setManagedBits(managedBits);
+    }
+
+    /**
+     * The selector, manager, traverser and version filter in effect at a specific node of the graph.
+     */
+    static final class CollectionState {
+        private final RepositorySystemSession session;
+        private final DependencySelector selector;
+        private final DependencyManager manager;
+        private final DependencyTraverser traverser;
+        private final VersionFilter versionFilter;
+        private DefaultRepositorySystemSession subtreeSession;
+
+        private CollectionState(RepositorySystemSession session, DependencySelector selector, DependencyManager manager,
+                DependencyTraverser traverser, VersionFilter versionFilter) {
+            this.session = session;
+            this.selector = selector;
+            this.manager = manager;
+            this.traverser = traverser;
+            this.versionFilter = versionFilter;
+        }
+
+        /**
+         * 
+         * @param session the session
+         * @return the initial state of the given session (i.e. the one for the root node)
+         */
+        static CollectionState of(RepositorySystemSession session) {
+            return new CollectionState(session, session.getDependencySelector(), session.getDependencyManager(),
+                    session.getDependencyTraverser(), session.getVersionFilter());
+        }
+
+        /**
+         * 
+         * @param context the context of the node
+         * @return the state for the children of the node
+         */
+        CollectionState derive(DependencyCollectionContext context) {
+            return new CollectionState(session,
+                    selector != null ? selector.deriveChildSelector(context) : null,
+                    manager != null ? manager.deriveChildManager(context) : null,
+                    traverser != null ? traverser.deriveChildTraverser(context) : null,
+                    versionFilter != null ? versionFilter.deriveChildFilter(context) : null);
+        }
+
+        boolean selects(Dependency dependency) {
+            return selector == null || selector.selectDependency(dependency);
+        }
+
+        boolean traverses(Dependency dependency) {
+            return traverser == null || traverser.traverseDependency(dependency);
+        }
+
+        /**
+         * 
+         * @param dependency the dependency
+         * @return the dependency with the dependency management applied
+         */
+        Dependency manage(Dependency dependency) {
+            DependencyManagement management = manager != null ? manager.manageDependency(dependency) : null;
+            if (management == null) {
+                return dependency;
+            }
+            Dependency managedDependency = dependency;
+            if (management.getVersion() != null) {
+                managedDependency = managedDependency.setArtifact(managedDependency.getArtifact().setVersion(management.getVersion()));
+            }
+            if (management.getProperties() != null) {
+                managedDependency = managedDependency.setArtifact(managedDependency.getArtifact().setProperties(management.getProperties()));
+            }
+            if (management.getScope() != null) {
+                managedDependency = managedDependency.setScope(management.getScope());
+            }
+            if (management.getOptional() != null) {
+                managedDependency = managedDependency.setOptional(management.getOptional());
+            }
+            if (management.getExclusions() != null) {
+                managedDependency = managedDependency.setExclusions(management.getExclusions());
+            }
+            return managedDependency;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(selector, manager, traverser, versionFilter);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            CollectionState other = (CollectionState) obj;
+            return session == other.session && Objects.equals(selector, other.selector) && Objects.equals(manager, other.manager)
+                    && Objects.equals(traverser, other.traverser) && Objects.equals(versionFilter, other.versionFilter);
+        }
+
+        ReactorCache.SubtreeKey newKey(Dependency dependency, List<RemoteRepository> remoteRepositories) {
+            return new ReactorCache.SubtreeKey(dependency, selector, manager, traverser, versionFilter, remoteRepositories);
+        }
+
+        /**
+         * 
+         * @return the session for collecting the children of the node
+         */
+        synchronized RepositorySystemSession getSubtreeSession() {
+            if (subtreeSession == null) {
+                subtreeSession = new DefaultRepositorySystemSession(session);
+                subtreeSession.setDependencySelector(selector);
+                subtreeSession.setDependencyManager(manager);
+                subtreeSession.setDependencyTraverser(traverser);
+                subtreeSession.setVersionFilter(versionFilter);
+                // the transformer is only applied to the merged graph
+                subtreeSession.setDependencyGraphTransformer(null);
+            }
+            return subtreeSession;
+        }
+    }
+
+    /**
+     * Collects multiple subtrees (potentially in parallel) and attaches them to their parent nodes.
+     * Identical subtrees (i.e. same dependency and state) are only collected once.
+     */
+    final class Batch implements AutoCloseable {
+        private final CollectResult result;
+        private final boolean isGrouped;
+        private final Map<ReactorCache.SubtreeKey, Future<DependencyNode>> subtreesByKey;
+        private final List<ScheduledSubtree> subtrees;
+        private final Map<CollectionState, List<SubtreeGroup>> groupsByState;
+        private final ExecutorService executor;
+
+        private Batch(DependencyNode rootNode, boolean isGrouped) {
+            result = new CollectResult(new CollectRequest(rootNode.getDependency(), remoteRepositories));
+            result.setRoot(rootNode);
+            this.isGrouped = isGrouped;
+            subtreesByKey = new HashMap<>();
+            subtrees = new ArrayList<>();
+            groupsByState = new LinkedHashMap<>();
+            executor = parallelism > 1 ? newExecutor(parallelism) : null;
+            numCollectedSubtrees.set(0);
+            numCollectRequests.set(0);
+        }
+
+        /**
+         * Schedules the collection of the subtree for the given dependency.
+         * @param parentNode the node to which to add the subtree (must have a mutable list of children)
+         * @param dependency the dependency (already selected by the given state)
+         * @param state the state in effect at the parent node
+         */
+        void add(DependencyNode parentNode, Dependency dependency, CollectionState state) {
+            add(parentNode, dependency, dependency, state);
+        }
+
+        /**
+         * Schedules the collection of the subtree for the given managed dependency.
+         * @param parentNode the node to which to add the subtree (must have a mutable list of children)
+         * @param premanagedDependency the dependency before management (recorded in the subtree's root node)
+         * @param dependency the dependency with the management of the given state applied (already selected by the given state)
+         * @param state the state in effect at the parent node
+         */
+        void add(DependencyNode parentNode, Dependency premanagedDependency, Dependency dependency, CollectionState state) {
+            final FutureTask<DependencyNode> subtreeTask;
+            if (!state.traverses(dependency)) {
+                subtreeTask = new FutureTask<>(() -> new DefaultDependencyNode(dependency));
+            } else {
+                ReactorCache.SubtreeKey key = state.newKey(dependency, remoteRepositories);
+                Future<DependencyNode> existingSubtree = subtreesByKey.get(key);
+                if (existingSubtree != null) {
+                    subtrees.add(new ScheduledSubtree(parentNode, premanagedDependency, dependency, existingSubtree));
+                    return;
+                }
+                if (isGrouped) {
+                    // collected in await()
+                    CompletableFuture<DependencyNode> groupedSubtree = new CompletableFuture<>();
+                    getGroup(state, dependency).add(dependency, groupedSubtree);
+                    subtreesByKey.put(key, groupedSubtree);
+                    subtrees.add(new ScheduledSubtree(parentNode, premanagedDependency, dependency, groupedSubtree));
+                    return;
+                }
+                subtreeTask = new FutureTask<>(() -> collectSubtree(state.getSubtreeSession(), dependency, key));
+                subtreesByKey.put(key, subtreeTask);
+            }
+            if (executor != null) {
+                executor.execute(subtreeTask);
+            } else {
+                subtreeTask.run();
+            }
+            subtrees.add(new ScheduledSubtree(parentNode, premanagedDependency, dependency, subtreeTask));
+        }
+
+        /**
+         * 
+         * @param state the state in effect at the parent node
+         * @param dependency the dependency
+         * @return the group of the given state which does not contain a dependency with the same versionless key yet
+         */
+        private SubtreeGroup getGroup(CollectionState state, Dependency dependency) {
+            List<SubtreeGroup> groups = groupsByState.computeIfAbsent(state, k -> new ArrayList<>(1));
+            String artifactKey = RuntimeArtifactsIndex.key(dependency.getArtifact());
+            for (SubtreeGroup group : groups) {
+                if (!group.contains(artifactKey)) {
+                    return group;
+                }
+            }
+            SubtreeGroup group = new SubtreeGroup(state);
+            groups.add(group);
+            return group;
+        }
+
+        void addException(Exception e) {
+            result.addException(e);
+        }
+
+        /**
+         * Collects all grouped subtrees, waits for all scheduled subtrees and attaches them to their parent nodes (in the order in which they have been added).
+         * @throws DependencyCollectionException in case the thread is interrupted while waiting
+         */
+        void await() throws DependencyCollectionException {
+            List<Map.Entry<SubtreeGroup, Future<CollectResult>>> groupResults = new ArrayList<>();
+            for (List<SubtreeGroup> groups : groupsByState.values()) {
+                for (SubtreeGroup group : groups) {
+                    FutureTask<CollectResult> groupTask = new FutureTask<>(() -> collectGroup(group, result.getRoot().getArtifact()));
+                    if (executor != null) {
+                        executor.execute(groupTask);
+                    } else {
+                        groupTask.run();
+                    }
+                    groupResults.add(new AbstractMap.SimpleImmutableEntry<>(group, groupTask));
+                }
+            }
+            groupsByState.clear();
+            for (Map.Entry<SubtreeGroup, Future<CollectResult>> groupResult : groupResults) {
+                CollectResult collectResult = getResult(groupResult.getValue(), result, DependencyCollectionException::getResult);
+                for (Exception e : collectResult.getExceptions()) {
+                    result.addException(e);
+                }
+                groupResult.getKey().complete(collectResult.getRoot());
+            }
+            numSubtrees = subtrees.size();
+            for (ScheduledSubtree subtree : subtrees) {
+                DependencyNode subtreeRoot = getSubtree(subtree.future, result);
+                if (subtreeRoot != null) {
+                    setVersionConstraint(subtreeRoot);
+                    if (!subtree.premanagedDependency.equals(subtree.dependency)) {
+                        // the subtree root may be shared with other parents, therefore record the management on a copy
+                        DefaultDependencyNode managedSubtreeRoot = new DefaultDependencyNode(subtreeRoot);
+                        managedSubtreeRoot.setChildren(subtreeRoot.getChildren());
+                        setPremanagedData(managedSubtreeRoot, subtree.premanagedDependency, subtree.dependency);
+                        subtreeRoot = managedSubtreeRoot;
+                    }
+                    subtree.parentNode.getChildren().add(subtreeRoot);
+                }
+            }
+        }
+
+        /**
+         * Applies the session's graph transformer to the whole graph.
+         * @return the root node of the transformed graph
+         * @throws DependencyCollectionException in case any of the subtrees could not be collected or the transformation failed
+         */
+        DependencyNode transform() throws DependencyCollectionException {
+            if (!result.getExceptions().isEmpty()) {
+                Exception firstException = result.getExceptions().get(0);
+                throw new DependencyCollectionException(result, firstException.getMessage(), firstException);
+            }
+            DependencyGraphTransformer transformer = repoSession.getDependencyGraphTransformer();
+            if (transformer == null) {
+                return result.getRoot();
+            }
+            try {
+                return transformer.transformGraph(result.getRoot(), new SimpleDependencyGraphTransformationContext(repoSession));
+            } catch (RepositoryException e) {
+                result.addException(e);
+                throw new DependencyCollectionException(result, e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private DependencyNode collectSubtree(RepositorySystemSession subtreeSession, Dependency directDependency, ReactorCache.SubtreeKey key) throws DependencyCollectionException, InterruptedException {
+        Callable<DependencyNode> collector = () -> {
+            numCollectedSubtrees.incrementAndGet();
+            numCollectRequests.incrementAndGet();
+            return repoSystem.collectDependencies(subtreeSession, new CollectRequest(directDependency, remoteRepositories)).getRoot();
+        };
+        if (reactorCache != null) {
+            return reactorCache.getOrCollect(key, collector);
+        }
+        try {
+            return collector.call();
+        } catch (DependencyCollectionException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected exception while collecting dependencies", e);
+        }
+    }
+
+    /**
+     * Collects the subtrees of a group with a single collect request whose root level derives the state of the group's parent nodes.
+     * 
+     * @param group the group
+     * @param rootArtifact the artifact of the graph's root node
+     * @return the (partial) result whose root node's children are the roots of the subtrees
+     */
+    private CollectResult collectGroup(SubtreeGroup group, Artifact rootArtifact) {
+        numCollectRequests.incrementAndGet();
+        numCollectedSubtrees.addAndGet(group.dependencies.size());
+        DefaultRepositorySystemSession groupSession = new DefaultRepositorySystemSession(group.state.getSubtreeSession());
+        GroupRootState rootState = new GroupRootState(group.state);
+        groupSession.setDependencySelector(rootState);
+        groupSession.setDependencyManager(rootState);
+        groupSession.setDependencyTraverser(rootState);
+        groupSession.setVersionFilter(rootState);
+        CollectRequest request = new CollectRequest(group.dependencies, Collections.emptyList(), remoteRepositories);
+        request.setRootArtifact(rootArtifact);
+        try {
+            return repoSystem.collectDependencies(groupSession, request);
+        } catch (DependencyCollectionException e) {
+            return e.getResult();
+        }
+    }
+
+    /**
+     * 
+     * @param subtreeFuture the future for the subtree
+     * @param result the result to which to add exceptions
+     * @return the (partial) subtree or {@code null}
+     * @throws DependencyCollectionException in case the thread is interrupted while waiting for the subtree
+     */
+    private static DependencyNode getSubtree(Future<DependencyNode> subtreeFuture, CollectResult result) throws DependencyCollectionException {
+        return getResult(subtreeFuture, result, e -> {
+            result.addException(e);
+            return e.getResult().getRoot();
+        });
+    }
+
+    /**
+     * 
+     * @param future the future
+     * @param result the result of the whole graph
+     * @param partialResultFunction the function returning the partial result in case the future failed with a {@link DependencyCollectionException}
+     * @return the (partial) result
+     * @throws DependencyCollectionException in case the thread is interrupted while waiting for the future
+     */
+    private static <T> T getResult(Future<T> future, CollectResult result, Function<DependencyCollectionException, T> partialResultFunction) throws DependencyCollectionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DependencyCollectionException(result, "Interrupted while collecting dependencies", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DependencyCollectionException) {
+                return partialResultFunction.apply((DependencyCollectionException) cause);
+            } else if (cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new DependencyCollectionException(result, "Interrupted while collecting dependencies", cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException("Unexpected exception while collecting dependencies", cause);
+            }
+        }
+    }
+
+    /** A subtree scheduled for collection together with the node to which to attach it */
+    private static final class ScheduledSubtree {
+        private final DependencyNode parentNode;
+        private final Dependency premanagedDependency;
+        private final Dependency dependency;
+        private final Future<DependencyNode> future;
+
+        ScheduledSubtree(DependencyNode parentNode, Dependency premanagedDependency, Dependency dependency, Future<DependencyNode> future) {
+            this.parentNode = parentNode;
+            this.premanagedDependency = premanagedDependency;
+            this.dependency = dependency;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Subtrees whose parent nodes have the same state, collected with a single collect request.
+     * Contains at most one dependency per versionless key so that the collected nodes can be assigned unambiguously.
+     */
+    private static final class SubtreeGroup {
+        private final CollectionState state;
+        private final List<Dependency> dependencies;
+        private final Map<String, CompletableFuture<DependencyNode>> subtreesByArtifactKey;
+
+        SubtreeGroup(CollectionState state) {
+            this.state = state;
+            this.dependencies = new ArrayList<>();
+            this.subtreesByArtifactKey = new HashMap<>();
+        }
+
+        boolean contains(String artifactKey) {
+            return subtreesByArtifactKey.containsKey(artifactKey);
+        }
+
+        void add(Dependency dependency, CompletableFuture<DependencyNode> subtree) {
+            dependencies.add(dependency);
+            subtreesByArtifactKey.put(RuntimeArtifactsIndex.key(dependency.getArtifact()), subtree);
+        }
+
+        /**
+         * Completes the futures of all subtrees with the children of the given root node.
+         * @param rootNode the root node of the (partial) result of the collect request (may be {@code null})
+         */
+        void complete(DependencyNode rootNode) {
+            if (rootNode != null) {
+                for (DependencyNode child : rootNode.getChildren()) {
+                    // relocated nodes are assigned via the originally requested artifact
+                    Artifact requestedArtifact = child.getRelocations().isEmpty() ? child.getArtifact() : child.getRelocations().get(0);
+                    CompletableFuture<DependencyNode> subtree = subtreesByArtifactKey.get(RuntimeArtifactsIndex.key(requestedArtifact));
+                    if (subtree != null) {
+                        subtree.complete(child);
+                    }
+                }
+            }
+            // the remaining ones could not be collected
+            for (CompletableFuture<DependencyNode> subtree : subtreesByArtifactKey.values()) {
+                subtree.complete(null);
+            }
+        }
+    }
+
+    /**
+     * The selector, manager, traverser and version filter for the root of a collect request without root dependency,
+     * deriving the given state for the root's children (i.e. the requested dependencies).
+     */
+    private static final class GroupRootState implements DependencySelector, DependencyManager, DependencyTraverser, VersionFilter {
+        private final CollectionState childState;
+
+        GroupRootState(CollectionState childState) {
+            this.childState = childState;
+        }
+
+        @Override
+        public boolean selectDependency(Dependency dependency) {
+            return true;
+        }
+
+        @Override
+        public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+            return childState.selector;
+        }
+
+        @Override
+        public DependencyManagement manageDependency(Dependency dependency) {
+            return null;
+        }
+
+        @Override
+        public DependencyManager deriveChildManager(DependencyCollectionContext context) {
+            return childState.manager;
+        }
+
+        @Override
+        public boolean traverseDependency(Dependency dependency) {
+            return true;
+        }
+
+        @Override
+        public DependencyTraverser deriveChildTraverser(DependencyCollectionContext context) {
+            return childState.traverser;
+        }
+
+        @Override
+        public void filterVersions(VersionFilterContext context) {
+            // the root has no version
+        }
+
+        @Override
+        public VersionFilter deriveChildFilter(DependencyCollectionContext context) {
+            return childState.versionFilter;
+        }
+    }
+
+    /**
+     * Creates an executor using virtual threads (on Java 21 or newer) or a fixed thread pool (otherwise).
+     * In both cases at most {@code parallelism} subtrees are collected at the same time.
+     * 
+     * @param parallelism the maximum number of concurrently running collections
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int parallelism) {
+        ExecutorService virtualThreadExecutor = null;
+        try {
+            virtualThreadExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // not supported by this JRE
+        }
+        if (virtualThreadExecutor != null) {
+            return new BoundedExecutorService(virtualThreadExecutor, parallelism);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "requireProvidedDependenciesInRuntimeClasspath-collector-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Limits the number of concurrently running tasks of an unbounded executor (like the one for virtual threads) */
+    private static final class BoundedExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutorService(ExecutorService delegate, int parallelism) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(parallelism);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * The conflict resolver requires a version constraint on every node which is not always set on the root nodes of collect results.
+     * @param node the node
+     */
+    private static void setVersionConstraint(DependencyNode node) {
+        if (node instanceof DefaultDependencyNode && node.getVersionConstraint() == null) {
+            DefaultDependencyNode defaultNode = (DefaultDependencyNode) node;
+            try {
+                defaultNode.setVersionConstraint(VERSION_SCHEME.parseVersionConstraint(node.getArtifact().getVersion()));
+                if (defaultNode.getVersion() == null) {
+                    defaultNode.setVersion(VERSION_SCHEME.parseVersion(node.getArtifact().getVersion()));
+                }
+            } catch (InvalidVersionSpecificationException e) {
+                // leave it to the transformer
+            }
+        }
+    }
+
+    static final class SimpleDependencyCollectionContext implements DependencyCollectionContext {
+        private final RepositorySystemSession session;
+        private final Dependency dependency;
+        private final List<Dependency> managedDependencies;
+
+        SimpleDependencyCollectionContext(RepositorySystemSession session, Dependency dependency, List<Dependency> managedDependencies) {
+            this.session = session;
+            this.dependency = dependency;
+            this.managedDependencies = managedDependencies;
+        }
+
+        @Override
+        public RepositorySystemSession getSession() {
+            return session;
+        }
+
+        @Override
+        public Artifact getArtifact() {
+            return dependency.getArtifact();
+        }
+
+        @Override
+        public Dependency getDependency() {
+            return dependency;
+        }
+
+        @Override
+        public List<Dependency> getManagedDependencies() {
+            return managedDependencies;
+        }
+    }
+
+    static final class SimpleDependencyGraphTransformationContext implements DependencyGraphTransformationContext {
+        private final RepositorySystemSession session;
+        private final Map<Object, Object> values;
+
+        SimpleDependencyGraphTransformationContext(RepositorySystemSession session) {
+            this.session = session;
+            this.values = new HashMap<>();
+        }
+
+        @Override
+        public RepositorySystemSession getSession() {
+            return session;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return values.get(key);
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            return values.put(key, value);
+        }
+    }
+}
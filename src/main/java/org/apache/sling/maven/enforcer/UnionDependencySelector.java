@@ -0,0 +1,100 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.util.graph.selector.StaticDependencySelector;
+
+/**
+ * Selects a dependency if at least one of the given selectors selects it, i.e. collects (a superset of) the union of the graphs
+ * the individual selectors would collect. Child selectors are derived from all selectors as the collector only passes the managed dependency
+ * to {@link #deriveChildSelector(DependencyCollectionContext)} while the selection is based on the dependency before management.
+ * The exact graph of each selector is retrieved afterwards via {@link DependencyGraphFilter}.
+ */
+final class UnionDependencySelector implements DependencySelector {
+
+    private final List<DependencySelector> selectors;
+
+    /**
+     *
+     * @param selectors the selectors (at least one)
+     */
+    UnionDependencySelector(List<DependencySelector> selectors) {
+        if (selectors.isEmpty()) {
+            throw new IllegalArgumentException("At least one selector must be given");
+        }
+        this.selectors = Collections.unmodifiableList(selectors);
+    }
+
+    @Override
+    public boolean selectDependency(Dependency dependency) {
+        for (DependencySelector selector : selectors) {
+            if (selector.selectDependency(dependency)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public DependencySelector deriveChildSelector(DependencyCollectionContext context) {
+        List<DependencySelector> childSelectors = new ArrayList<>(selectors.size());
+        for (DependencySelector selector : selectors) {
+            DependencySelector childSelector = selector.deriveChildSelector(context);
+            if (childSelector == null) {
+                // no selector means all dependencies are selected
+                childSelector = new StaticDependencySelector(true);
+            }
+            if (!childSelectors.contains(childSelector)) {
+                childSelectors.add(childSelector);
+            }
+        }
+        if (childSelectors.isEmpty()) {
+            return new StaticDependencySelector(false);
+        }
+        if (childSelectors.equals(selectors)) {
+            return this;
+        }
+        return new UnionDependencySelector(childSelectors);
+    }
+
+    @Override
+    public int hashCode() {
+        return selectors.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        UnionDependencySelector other = (UnionDependencySelector) obj;
+        return selectors.equals(other.selectors);
+    }
+}
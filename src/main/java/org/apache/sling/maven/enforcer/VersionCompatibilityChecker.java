@@ -0,0 +1,193 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Evaluates version compatibility according to a {@link VersionCompatibilityStrategy}.
+ * Each version (range) string is only parsed once and the result for each pair of required and provided version is memoized,
+ * so that evaluating an already known pair neither parses nor allocates anything.
+ * All caches are bounded, i.e. they evict their least recently used entries once they contain more than the given maximum number of entries
+ * (the results are evicted per required version).
+ * This class is thread-safe.
+ */
+final class VersionCompatibilityChecker {
+
+    static final int DEFAULT_MAX_CACHE_SIZE = 10_000;
+
+    private final VersionCompatibilityStrategy strategy;
+    private final int maxCacheSize;
+    private final Map<String, VersionRange> requiredVersionRanges;
+    private final Map<String, ArtifactVersion> providedVersions;
+    /** first level key is the required version (range), second level key the provided version, guarded by itself */
+    private final LinkedHashMap<String, Map<String, Boolean>> results;
+    /** the total number of entries in the second level maps of {@link #results}, guarded by {@link #results} */
+    private int numResults;
+    private final LongAdder numChecks;
+    private final LongAdder numCacheHits;
+
+    VersionCompatibilityChecker(VersionCompatibilityStrategy strategy) {
+        this(strategy, DEFAULT_MAX_CACHE_SIZE);
+    }
+
+    VersionCompatibilityChecker(VersionCompatibilityStrategy strategy, int maxCacheSize) {
+        this.strategy = Objects.requireNonNull(strategy);
+        this.maxCacheSize = maxCacheSize;
+        requiredVersionRanges = new LruMap<>(maxCacheSize);
+        providedVersions = new LruMap<>(maxCacheSize);
+        results = new LinkedHashMap<>(16, 0.75f, true);
+        numChecks = new LongAdder();
+        numCacheHits = new LongAdder();
+    }
+
+    VersionCompatibilityStrategy getStrategy() {
+        return strategy;
+    }
+
+    boolean isCompatible(String requiredVersion, String providedVersion) throws InvalidVersionSpecificationException {
+        Boolean result = getCachedResult(requiredVersion, providedVersion);
+        if (result != null) {
+            numChecks.increment();
+            numCacheHits.increment();
+            return result;
+        }
+        return isCompatible(requiredVersion, getProvidedVersion(providedVersion));
+    }
+
+    /**
+     * 
+     * @param requiredVersion the version (range) of the provided dependency
+     * @param providedVersion the (already parsed) version found in the runtime classpath
+     * @return {@code true} in case the provided version is compatible with the required one according to the strategy, otherwise {@code false}
+     * @throws InvalidVersionSpecificationException in case the required version is not a valid version range
+     */
+    boolean isCompatible(String requiredVersion, ArtifactVersion providedVersion) throws InvalidVersionSpecificationException {
+        // DefaultArtifactVersion.toString() returns the original string
+        String providedVersionKey = providedVersion.toString();
+        Boolean result = getCachedResult(requiredVersion, providedVersionKey);
+        numChecks.increment();
+        if (result != null) {
+            numCacheHits.increment();
+        } else {
+            result = strategy.isCompatible(getRequiredVersionRange(requiredVersion), providedVersion);
+            putCachedResult(requiredVersion, providedVersionKey, result);
+        }
+        return result;
+    }
+
+    int getNumCachedResults() {
+        synchronized (results) {
+            return numResults;
+        }
+    }
+
+    /**
+     * 
+     * @return the number of compatibility checks performed by this instance (including the ones answered from the cache)
+     */
+    long getNumChecks() {
+        return numChecks.sum();
+    }
+
+    /**
+     * 
+     * @return the number of compatibility checks answered from the cache
+     */
+    long getNumCacheHits() {
+        return numCacheHits.sum();
+    }
+
+    private Boolean getCachedResult(String requiredVersion, String providedVersion) {
+        synchronized (results) {
+            Map<String, Boolean> resultsForRequiredVersion = results.get(requiredVersion);
+            if (resultsForRequiredVersion == null) {
+                return null;
+            }
+            return resultsForRequiredVersion.get(providedVersion);
+        }
+    }
+
+    private void putCachedResult(String requiredVersion, String providedVersion, Boolean result) {
+        synchronized (results) {
+            if (results.computeIfAbsent(requiredVersion, k -> new HashMap<>()).putIfAbsent(providedVersion, result) == null) {
+                numResults++;
+            }
+            // the most recently used required version is the last one, so it is never evicted
+            Iterator<Map<String, Boolean>> iterator = results.values().iterator();
+            while (numResults > maxCacheSize && iterator.hasNext()) {
+                Map<String, Boolean> resultsForRequiredVersion = iterator.next();
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                numResults -= resultsForRequiredVersion.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    private VersionRange getRequiredVersionRange(String requiredVersion) throws InvalidVersionSpecificationException {
+        VersionRange range;
+        synchronized (requiredVersionRanges) {
+            range = requiredVersionRanges.get(requiredVersion);
+        }
+        if (range == null) {
+            // parsed outside of the lock, cannot use computeIfAbsent due to the checked exception
+            range = VersionRange.createFromVersionSpec(requiredVersion);
+            synchronized (requiredVersionRanges) {
+                requiredVersionRanges.put(requiredVersion, range);
+            }
+        }
+        return range;
+    }
+
+    private ArtifactVersion getProvidedVersion(String providedVersion) {
+        synchronized (providedVersions) {
+            return providedVersions.computeIfAbsent(providedVersion, DefaultArtifactVersion::new);
+        }
+    }
+
+    /** Access-ordered map which evicts its least recently used entry once it contains more than the given number of entries */
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Locale;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Policies deciding whether a version found in the runtime classpath is compatible with the version of a provided dependency.
+ * Version ranges are always evaluated as is, the policy only applies to provided dependencies with a single version.
+ */
+enum VersionCompatibilityStrategy {
+
+    /** Only the very same version is compatible. */
+    STRICT {
+        @Override
+        boolean isCompatible(ArtifactVersion required, ArtifactVersion provided) {
+            return required.compareTo(provided) == 0;
+        }
+    },
+    /** Versions with the same major version and an equal or higher minor version are compatible. */
+    SEMVER {
+        @Override
+        boolean isCompatible(ArtifactVersion required, ArtifactVersion provided) {
+            return required.getMajorVersion() == provided.getMajorVersion() && required.getMinorVersion() <= provided.getMinorVersion();
+        }
+    },
+    /** Versions with the same major version which are equal or higher are compatible (like the default OSGi import range {@code [required,nextMajor)}). */
+    OSGI {
+        @Override
+        boolean isCompatible(ArtifactVersion required, ArtifactVersion provided) {
+            return required.getMajorVersion() == provided.getMajorVersion() && required.compareTo(provided) <= 0;
+        }
+    };
+
+    /**
+     * 
+     * @param required the version of the provided dependency
+     * @param provided the version found in the runtime classpath
+     * @return {@code true} in case the provided version is compatible with the required one, otherwise {@code false}
+     */
+    abstract boolean isCompatible(ArtifactVersion required, ArtifactVersion provided);
+
+    /**
+     * 
+     * @param required the version (range) of the provided dependency
+     * @param provided the version found in the runtime classpath
+     * @return {@code true} in case the provided version is contained in the required range or compatible with the required version, otherwise {@code false}
+     */
+    boolean isCompatible(VersionRange required, ArtifactVersion provided) {
+        // is it really a range?
+        if (required.getRecommendedVersion() == null) {
+            return required.containsVersion(provided);
+        } else {
+            return isCompatible(required.getRecommendedVersion(), provided);
+        }
+    }
+
+    static VersionCompatibilityStrategy fromString(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported version compatibility '" + name + "', must be one of 'strict', 'semver' or 'osgi'", e);
+        }
+    }
+}
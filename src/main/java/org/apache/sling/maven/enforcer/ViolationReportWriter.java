@@ -0,0 +1,311 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams violations to report files as soon as they are found, i.e. the memory consumption does not depend on the number of violations.
+ * Supported formats are <a href="https://jsonlines.org/">JSON Lines</a> (one JSON object per violation)
+ * and <a href="https://docs.oasis-open.org/sarif/sarif/v2.1.0/sarif-v2.1.0.html">SARIF 2.1.0</a>.
+ * This class is thread-safe.
+ */
+final class ViolationReportWriter implements Closeable {
+
+    enum Format {
+        JSONL("jsonl"),
+        SARIF("sarif");
+
+        private final String fileExtension;
+
+        Format(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        /**
+         *
+         * @param name the name of the format (case-insensitive)
+         * @return the format
+         * @throws IllegalArgumentException in case the format is not supported
+         */
+        static Format fromName(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported report format '" + name + "', must be one of 'jsonl' or 'sarif'", e);
+            }
+        }
+    }
+
+    enum Reason {
+        /** no artifact with the same groupId, artifactId, extension and classifier found in the runtime classpath */
+        MISSING("missing"),
+        /** only artifacts with incompatible versions found in the runtime classpath */
+        INCOMPATIBLE_VERSION("incompatibleVersion");
+
+        private final String name;
+
+        Reason(String name) {
+            this.name = name;
+        }
+    }
+
+    static final String RULE_NAME = "requireProvidedDependenciesInRuntimeClasspath";
+
+    /** appended to the messages of violations found before conflict resolution */
+    static final String UNVERIFIED_SUFFIX = " (unverified candidate found before conflict resolution)";
+
+    private final List<FormatWriter> formatWriters;
+
+    /**
+     * Creates the report files (and their parent directories) and writes the headers.
+     * @param directory the directory in which to create the files (named {@code <baseName>.<format>})
+     * @param baseName the file name without extension
+     * @param formats the formats to write
+     * @param pomUri the URI of the checked project's pom.xml (used as location of the SARIF results)
+     * @param isError whether the violations are errors (or warnings)
+     * @throws IOException in case the files cannot be created
+     */
+    ViolationReportWriter(Path directory, String baseName, Collection<Format> formats, String pomUri, boolean isError) throws IOException {
+        formatWriters = new ArrayList<>();
+        Files.createDirectories(directory);
+        try {
+            for (Format format : formats) {
+                Writer writer = Files.newBufferedWriter(getFile(directory, baseName, format), StandardCharsets.UTF_8);
+                formatWriters.add(format == Format.SARIF ? new SarifWriter(writer, pomUri, isError) : new JsonLinesWriter(writer));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    static Path getFile(Path directory, String baseName, Format format) {
+        return directory.resolve(baseName + "." + format.fileExtension);
+    }
+
+    /**
+     * Appends a violation to all report files.
+     * @param violation the violation
+     * @throws IOException in case one of the files cannot be written
+     */
+    synchronized void write(Violation violation) throws IOException {
+        for (FormatWriter formatWriter : formatWriters) {
+            formatWriter.write(violation);
+        }
+    }
+
+    /**
+     * Writes the footers and closes all files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException exception = null;
+        for (FormatWriter formatWriter : formatWriters) {
+            try {
+                formatWriter.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        formatWriters.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /** A single missing dependency */
+    static final class Violation {
+        private final String coordinates;
+        private final String scope;
+        private final boolean isOptional;
+        private final List<String> path;
+        private final long numPaths;
+        private final Reason reason;
+        private final List<String> runtimeVersions;
+        private final boolean isUnverified;
+
+        /**
+         *
+         * @param coordinates the coordinates of the dependency (in the format of {@link org.eclipse.aether.artifact.Artifact#toString()})
+         * @param scope the scope of the dependency
+         * @param isOptional whether the dependency is optional
+         * @param path the coordinates of the intermediate dependencies via which the dependency is reached (starting with the direct dependency)
+         * @param numPaths the number of paths via which the dependency is reached (0 if unknown)
+         * @param runtimeVersions the (incompatible) versions of the artifact contained in the runtime classpath
+         */
+        Violation(String coordinates, String scope, boolean isOptional, List<String> path, long numPaths, List<String> runtimeVersions) {
+            this(coordinates, scope, isOptional, path, numPaths, runtimeVersions, false);
+        }
+
+        /**
+         *
+         * @param coordinates the coordinates of the dependency (in the format of {@link org.eclipse.aether.artifact.Artifact#toString()})
+         * @param scope the scope of the dependency
+         * @param isOptional whether the dependency is optional
+         * @param path the coordinates of the intermediate dependencies via which the dependency is reached (starting with the direct dependency)
+         * @param numPaths the number of paths via which the dependency is reached (0 if unknown)
+         * @param runtimeVersions the (incompatible) versions of the artifact contained in the runtime classpath
+         * @param isUnverified whether the violation has been found before conflict resolution, i.e. the dependency may not be part of the resolved graph
+         */
+        Violation(String coordinates, String scope, boolean isOptional, List<String> path, long numPaths, List<String> runtimeVersions, boolean isUnverified) {
+            this.coordinates = coordinates;
+            this.scope = scope;
+            this.isOptional = isOptional;
+            this.path = Collections.unmodifiableList(new ArrayList<>(path));
+            this.numPaths = numPaths;
+            this.reason = runtimeVersions.isEmpty() ? Reason.MISSING : Reason.INCOMPATIBLE_VERSION;
+            this.runtimeVersions = Collections.unmodifiableList(new ArrayList<>(runtimeVersions));
+            this.isUnverified = isUnverified;
+        }
+
+        Reason getReason() {
+            return reason;
+        }
+
+        /**
+         *
+         * @return the human-readable description of the violation (without colors)
+         */
+        String getMessage() {
+            StringBuilder message = new StringBuilder("Dependency ").append(coordinates).append(" (").append(scope).append(isOptional ? "?" : "").append(")");
+            if (!path.isEmpty()) {
+                message.append(" via ").append(String.join(" -> ", path));
+            }
+            if (reason == Reason.MISSING) {
+                message.append(" not found as runtime dependency");
+            } else {
+                message.append(" only found with potentially incompatible version ").append(String.join(", ", runtimeVersions)).append(" in runtime classpath");
+            }
+            message.append(isUnverified ? UNVERIFIED_SUFFIX : "").append("!");
+            if (numPaths > 1) {
+                message.append(" Reachable via ").append(numPaths).append(" paths.");
+            }
+            return message.toString();
+        }
+
+        /**
+         *
+         * @return the properties of the violation as comma-separated JSON members (without surrounding braces)
+         */
+        String toJsonMembers() {
+            StringBuilder json = new StringBuilder();
+            json.append("\"dependency\": ").append(Json.quote(coordinates))
+                .append(", \"scope\": ").append(Json.quote(scope))
+                .append(", \"optional\": ").append(isOptional)
+                .append(", \"reason\": ").append(Json.quote(reason.name))
+                .append(", \"path\": ").append(Json.array(path));
+            if (numPaths > 0) {
+                json.append(", \"numPaths\": ").append(numPaths);
+            }
+            if (!runtimeVersions.isEmpty()) {
+                json.append(", \"runtimeVersions\": ").append(Json.array(runtimeVersions));
+            }
+            if (isUnverified) {
+                json.append(", \"unverified\": true");
+            }
+            return json.toString();
+        }
+    }
+
+    private interface FormatWriter extends Closeable {
+        void write(Violation violation) throws IOException;
+    }
+
+    private static final class JsonLinesWriter implements FormatWriter {
+        private final Writer writer;
+
+        JsonLinesWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(Violation violation) throws IOException {
+            writer.write("{" + violation.toJsonMembers() + ", \"message\": " + Json.quote(violation.getMessage()) + "}\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class SarifWriter implements FormatWriter {
+        private final Writer writer;
+        private final String pomUri;
+        private final String level;
+        private boolean hasResults;
+
+        SarifWriter(Writer writer, String pomUri, boolean isError) throws IOException {
+            this.writer = writer;
+            this.pomUri = pomUri;
+            this.level = isError ? "error" : "warning";
+            writer.write("{\n"
+                    + "  \"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\",\n"
+                    + "  \"version\": \"2.1.0\",\n"
+                    + "  \"runs\": [{\n"
+                    + "    \"tool\": {\"driver\": {\n"
+                    + "      \"name\": \"sling-maven-enforcer-rules\",\n"
+                    + "      \"informationUri\": \"https://github.com/apache/sling-maven-enforcer-rules\",\n"
+                    + "      \"rules\": [\n"
+                    + "        {\"id\": " + Json.quote(ruleId(Reason.MISSING)) + ", \"shortDescription\": {\"text\": \"Provided dependency not found in runtime classpath\"}},\n"
+                    + "        {\"id\": " + Json.quote(ruleId(Reason.INCOMPATIBLE_VERSION)) + ", \"shortDescription\": {\"text\": \"Provided dependency only found with incompatible version in runtime classpath\"}}\n"
+                    + "      ]\n"
+                    + "    }},\n"
+                    + "    \"results\": [");
+        }
+
+        private static String ruleId(Reason reason) {
+            return RULE_NAME + "/" + reason.name;
+        }
+
+        @Override
+        public void write(Violation violation) throws IOException {
+            writer.write(hasResults ? ",\n" : "\n");
+            writer.write("      {\"ruleId\": " + Json.quote(ruleId(violation.reason))
+                    + ", \"level\": " + Json.quote(level)
+                    + ", \"message\": {\"text\": " + Json.quote(violation.getMessage()) + "}"
+                    + ", \"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": " + Json.quote(pomUri) + "}}}]"
+                    + ", \"properties\": {" + violation.toJsonMembers() + "}}");
+            hasResults = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.write((hasResults ? "\n    " : "") + "]\n  }]\n}\n");
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
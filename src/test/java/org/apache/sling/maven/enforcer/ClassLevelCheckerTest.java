@@ -0,0 +1,70 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ClassLevelCheckerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testGetUnresolvableClasses() throws IOException {
+        File runtimeJar = JarClassIndexTest.createJar(tempDir.resolve("runtime.jar"), "org/example/api/Bar.class").toFile();
+        Map<String, File> files = new HashMap<>();
+        files.put("group:missing:jar:1.0", JarClassIndexTest.createJar(tempDir.resolve("missing.jar"), "org/example/impl/Foo.class", "org/example/impl/Foo$Inner.class").toFile());
+        // contains the same class as the runtime dependency (e.g. repackaged API)
+        files.put("group:repackaged:jar:1.0", JarClassIndexTest.createJar(tempDir.resolve("repackaged.jar"), "org/example/api/Bar.class").toFile());
+        ClassLevelChecker checker = new ClassLevelChecker(
+                new HashSet<>(Arrays.asList("org/example/api/Bar", "org/example/impl/Foo", "org/example/impl/Foo$Inner", "org/other/Baz",
+                        "java/util/List", "javax/xml/parsers/DocumentBuilder")),
+                Arrays.asList(runtimeJar, null, new File(tempDir.toFile(), "nonexisting.jar")),
+                artifact -> files.get(artifact.toString()), new CollectingEnforcerLogger());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("org/example/impl/Foo", "org/example/impl/Foo$Inner", "org/other/Baz")), checker.getUnresolvableClasses());
+        Assertions.assertEquals(Arrays.asList("org.example.impl.Foo", "org.example.impl.Foo$Inner"), checker.getUnresolvableClasses(new DefaultArtifact("group:missing:1.0")));
+        Assertions.assertEquals(Collections.emptyList(), checker.getUnresolvableClasses(new DefaultArtifact("group:repackaged:1.0")));
+        Artifact unresolvableArtifact = new DefaultArtifact("group:unresolvable:1.0");
+        Assertions.assertThrows(IOException.class, () -> checker.getUnresolvableClasses(unresolvableArtifact));
+    }
+
+    @Test
+    void testWithoutUnresolvableClasses() throws IOException {
+        ClassLevelChecker checker = new ClassLevelChecker(Collections.singleton("java/lang/String"), Collections.emptyList(),
+                artifact -> {
+                    throw new IOException("Must not be called");
+                }, new CollectingEnforcerLogger());
+        Assertions.assertTrue(checker.getUnresolvableClasses().isEmpty());
+        Assertions.assertEquals(Collections.emptyList(), checker.getUnresolvableClasses(new DefaultArtifact("group:missing:1.0")));
+    }
+}
@@ -0,0 +1,92 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ClassReferenceScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAddReferencedClasses() throws IOException {
+        Set<String> referencedClasses = new TreeSet<>();
+        String className = ClassReferenceScanner.addReferencedClasses(ByteBuffer.wrap(readClassFile(Fixture.class)), referencedClasses, "Fixture");
+        Assertions.assertEquals("org/apache/sling/maven/enforcer/ClassReferenceScannerTest$Fixture", className);
+        Assertions.assertTrue(referencedClasses.contains("org/eclipse/aether/artifact/DefaultArtifact"), referencedClasses.toString());
+        // via array types
+        Assertions.assertTrue(referencedClasses.contains("org/eclipse/aether/graph/Dependency"), referencedClasses.toString());
+        Assertions.assertTrue(referencedClasses.contains("java/lang/StringBuilder"), referencedClasses.toString());
+        Assertions.assertFalse(referencedClasses.contains(className));
+        Assertions.assertTrue(referencedClasses.stream().noneMatch(c -> c.startsWith("[")), referencedClasses.toString());
+    }
+
+    @Test
+    void testGetReferencedClassesWithoutOwnClasses() throws IOException {
+        write(tempDir.resolve("org/apache/sling/maven/enforcer/ClassReferenceScannerTest.class"), readClassFile(ClassReferenceScannerTest.class));
+        write(tempDir.resolve("org/apache/sling/maven/enforcer/ClassReferenceScannerTest$Fixture.class"), readClassFile(Fixture.class));
+        Set<String> referencedClasses = ClassReferenceScanner.getReferencedClasses(tempDir);
+        Assertions.assertTrue(referencedClasses.contains("org/eclipse/aether/artifact/DefaultArtifact"), referencedClasses.toString());
+        Assertions.assertFalse(referencedClasses.contains("org/apache/sling/maven/enforcer/ClassReferenceScannerTest"), referencedClasses.toString());
+        Assertions.assertFalse(referencedClasses.contains("org/apache/sling/maven/enforcer/ClassReferenceScannerTest$Fixture"), referencedClasses.toString());
+    }
+
+    @Test
+    void testInvalidClassFile() {
+        Assertions.assertThrows(IOException.class, () -> ClassReferenceScanner.addReferencedClasses(ByteBuffer.wrap(new byte[] { (byte) 0xCA, (byte) 0xFE }), new TreeSet<>(), "invalid"));
+        Assertions.assertThrows(IOException.class, () -> ClassReferenceScanner.addReferencedClasses(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), new TreeSet<>(), "invalid"));
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private static byte[] readClassFile(Class<?> clazz) throws IOException {
+        try {
+            return Files.readAllBytes(Paths.get(clazz.getResource(clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1) + ".class").toURI()));
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static final class Fixture {
+        Object create() {
+            Dependency[][] dependencies = new Dependency[1][1];
+            StringBuilder[] builders = new StringBuilder[1];
+            int[][] numbers = new int[1][1];
+            return new DefaultArtifact("group:artifact:1.0") + dependencies.toString() + builders.length + numbers.length;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CompactDependencyGraphTest {
+
+    @Test
+    void testSharedNodesAndCycles() {
+        // root -> a -> shared, root -> b -> shared, shared -> a (cycle), b -> a' (same coordinates as a, but optional and different scope)
+        DefaultDependencyNode shared = createNode("group:shared:1.0", "provided", false);
+        DefaultDependencyNode a = createNode("group:a:1.0", "provided", false, shared);
+        DependencyNode root = createNode("group:root:1.0", "", false,
+                a, createNode("group:b:1.0", "compile", false, shared, createNode("group:a:1.0", "runtime", true)));
+        shared.setChildren(new ArrayList<>(Collections.singletonList(a)));
+
+        CompactDependencyGraph graph = CompactDependencyGraph.of(root);
+        // nodes in pre-order: root, a, shared, b, a'
+        Assertions.assertEquals(5, graph.getNumNodes());
+        Assertions.assertEquals(6, graph.getNumEdges());
+        Assertions.assertEquals(4, graph.getNumCoordinates());
+        Assertions.assertEquals(Arrays.asList(1, 3), getChildren(graph, 0));
+        Assertions.assertEquals(Collections.singletonList(2), getChildren(graph, 1));
+        Assertions.assertEquals(Collections.singletonList(1), getChildren(graph, 2));
+        Assertions.assertEquals(Arrays.asList(2, 4), getChildren(graph, 3));
+        Assertions.assertEquals(Collections.emptyList(), getChildren(graph, 4));
+
+        Assertions.assertEquals(graph.getCoordinateId(1), graph.getCoordinateId(4));
+        Assertions.assertSame(graph.getArtifact(1), graph.getArtifact(4));
+        Assertions.assertEquals("group:a:jar:1.0", graph.getCoordinates(4));
+        Assertions.assertEquals("group:a:jar:1.0 (provided)", graph.getDependencyString(1));
+        Assertions.assertEquals("group:a:jar:1.0 (runtime?)", graph.getDependencyString(4));
+        Assertions.assertEquals("group:shared:jar:1.0 (provided)", graph.getDependencyString(2));
+        Assertions.assertEquals("compile", graph.getScope(3));
+        Assertions.assertFalse(graph.isOptional(3));
+    }
+
+    private static List<Integer> getChildren(CompactDependencyGraph graph, int node) {
+        List<Integer> children = new ArrayList<>();
+        for (int i = graph.getFirstChildIndex(node); i < graph.getEndChildIndex(node); i++) {
+            children.add(graph.getChild(i));
+        }
+        return children;
+    }
+
+    private static DefaultDependencyNode createNode(String coordinates, String scope, boolean isOptional, DependencyNode... children) {
+        DefaultDependencyNode node = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coordinates), scope, isOptional));
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+}
@@ -0,0 +1,198 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.DependencyCollectionContext;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.util.graph.selector.OptionalDependencySelector;
+import org.eclipse.aether.util.graph.selector.ScopeDependencySelector;
+import org.eclipse.aether.util.graph.selector.StaticDependencySelector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DependencyGraphFilterTest {
+
+    @Test
+    void testFilter() throws IOException {
+        DependencyNode root = createGraph();
+        List<String> originalTree = render(root);
+        // only transitive optional dependencies are removed
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:c:jar:1.0 (test)",
+                "    group:d:jar:1.0 (provided)"),
+                render(filter(root, new OptionalDependencySelector())));
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:b:jar:1.0 (provided)",
+                "    group:d:jar:1.0 (provided)"),
+                render(filter(root, new ScopeDependencySelector("test"))));
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:d:jar:1.0 (provided)"),
+                render(filter(root, new ExcludesDependencySelector(Collections.singletonList(ExcludesMatcher.compile(Arrays.asList("group:a", "group:b")))))));
+        // the original graph is not modified
+        Assertions.assertEquals(originalTree, render(root));
+    }
+
+    @Test
+    void testSharedNodesAndCycles() throws IOException {
+        DependencyNode root = createGraph();
+        DependencyNode filteredRoot = filter(root, new StaticDependencySelector(true));
+        Assertions.assertEquals(render(root), render(filteredRoot));
+        DependencyNode filteredA = filteredRoot.getChildren().get(0);
+        DependencyNode filteredD = filteredRoot.getChildren().get(1);
+        // b is still shared between a and d
+        Assertions.assertSame(filteredA.getChildren().get(0), filteredD.getChildren().get(0));
+        Assertions.assertNotSame(root.getChildren().get(0), filteredA);
+
+        // a -> b -> a
+        DefaultDependencyNode a = createNode("group:a:1.0", "compile", false);
+        a.getChildren().add(createNode("group:b:1.0", "compile", false, a));
+        DependencyNode filteredCycleRoot = filter(createNode("group:root:1.0", "compile", false, a), new StaticDependencySelector(true));
+        DependencyNode filteredCycleA = filteredCycleRoot.getChildren().get(0);
+        Assertions.assertSame(filteredCycleA, filteredCycleA.getChildren().get(0).getChildren().get(0));
+    }
+
+    @Test
+    void testUnionSelector() throws IOException {
+        DependencyNode root = createGraph();
+        DependencySelector optionalSelector = new OptionalDependencySelector();
+        DependencySelector excludesSelector = new ExcludesDependencySelector(Collections.singletonList(ExcludesMatcher.compile(Collections.singletonList("group:c"))));
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:b:jar:1.0 (provided)",
+                "        group:c:jar:1.0 (test)",
+                "    group:d:jar:1.0 (provided)"),
+                render(filter(root, new UnionDependencySelector(Arrays.asList(optionalSelector, excludesSelector)))));
+        // the selected dependencies of each selector are a subset of the union
+        DependencyNode unionRoot = filter(root, new UnionDependencySelector(Arrays.asList(new ScopeDependencySelector("test"), excludesSelector)));
+        Assertions.assertEquals(render(filter(root, new ScopeDependencySelector("test"))), render(filter(unionRoot, new ScopeDependencySelector("test"))));
+        Assertions.assertEquals(render(filter(root, excludesSelector)), render(filter(unionRoot, excludesSelector)));
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:d:jar:1.0 (provided)"),
+                render(filter(root, new UnionDependencySelector(Collections.singletonList(new ExcludesDependencySelector(
+                        Collections.singletonList(ExcludesMatcher.compile(Arrays.asList("group:a", "group:b")))))))));
+    }
+
+    @Test
+    void testSelectorIsAppliedToPremanagedDependency() throws IOException {
+        // e is managed from test to provided scope, f from optional to non-optional, g has managed bits but no premanaged data
+        DefaultDependencyNode e = createNode("group:e:1.0", "provided", false);
+        e.setManagedBits(DependencyNode.MANAGED_SCOPE | DependencyNode.MANAGED_VERSION);
+        e.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_SCOPE, "test");
+        e.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_VERSION, "0.9");
+        DefaultDependencyNode f = createNode("group:f:1.0", "provided", false);
+        f.setManagedBits(DependencyNode.MANAGED_OPTIONAL);
+        f.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_OPTIONAL, true);
+        DefaultDependencyNode g = createNode("group:g:1.0", "provided", false);
+        g.setManagedBits(DependencyNode.MANAGED_SCOPE);
+        DependencyNode root = createNode("group:root:1.0", "compile", false, createNode("group:a:1.0", "provided", false, e, f, g));
+        Assertions.assertEquals(new Dependency(new DefaultArtifact("group:e:0.9"), "test", false), DependencyGraphFilter.getPremanagedDependency(e));
+        // the selectors see the dependencies before management (like during the collection), the copies retain the managed ones
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:f:jar:1.0 (provided)",
+                "        group:g:jar:1.0 (provided)"),
+                render(filter(root, new ScopeDependencySelector("test"))));
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:e:jar:1.0 (provided)",
+                "        group:g:jar:1.0 (provided)"),
+                render(filter(root, new OptionalDependencySelector())));
+    }
+
+    @Test
+    void testUnionSelectorWithDependencyManagedToTestScope() throws IOException {
+        // junit is a compile dependency of a which is managed to test scope (e.g. via a BOM), both profiles exclude test dependencies
+        DefaultDependencyNode junit = createNode("junit:junit:4.13.2", "test", false, createNode("org.hamcrest:hamcrest-core:1.3", "compile", false));
+        junit.setManagedBits(DependencyNode.MANAGED_SCOPE);
+        junit.setData(DependencyManagerUtils.NODE_DATA_PREMANAGED_SCOPE, "compile");
+        DependencyNode root = createNode("group:root:1.0", "compile", false, createNode("group:a:1.0", "compile", false, junit));
+        DependencySelector strictSelector = new ScopeDependencySelector("test");
+        DependencySelector lenientSelector = new ScopeDependencySelector("test", "system");
+        DependencySelector unionSelector = new UnionDependencySelector(Arrays.asList(strictSelector, lenientSelector));
+
+        // derive the selectors like the collector: the selection is based on the premanaged dependency, the child selector on the managed one
+        DependencySelector rootChildSelector = unionSelector.deriveChildSelector(newContext(root.getDependency()));
+        DependencySelector aChildSelector = rootChildSelector.deriveChildSelector(newContext(root.getChildren().get(0).getDependency()));
+        Assertions.assertTrue(aChildSelector.selectDependency(DependencyGraphFilter.getPremanagedDependency(junit)));
+        DependencySelector junitChildSelector = aChildSelector.deriveChildSelector(newContext(junit.getDependency()));
+        Assertions.assertTrue(junitChildSelector.selectDependency(junit.getChildren().get(0).getDependency()));
+
+        List<String> expectedTree = Arrays.asList(
+                "group:root:jar:1.0 (compile)",
+                "    group:a:jar:1.0 (compile)",
+                "        junit:junit:jar:4.13.2 (test)",
+                "            org.hamcrest:hamcrest-core:jar:1.3 (compile)");
+        DependencyNode unionRoot = filter(root, unionSelector);
+        Assertions.assertEquals(expectedTree, render(unionRoot));
+        Assertions.assertEquals(expectedTree, render(filter(unionRoot, strictSelector)));
+        Assertions.assertEquals(expectedTree, render(filter(unionRoot, lenientSelector)));
+    }
+
+    private static DependencyCollectionContext newContext(Dependency dependency) {
+        return new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, dependency, Collections.emptyList());
+    }
+
+    /**
+     * 
+     * @return root -> a (optional) -> b (optional), a -> c (test), root -> d -> b (same node instance)
+     */
+    private static DependencyNode createGraph() {
+        DependencyNode b = createNode("group:b:1.0", "provided", true);
+        return createNode("group:root:1.0", "compile", false,
+                createNode("group:a:1.0", "provided", true, b, createNode("group:c:1.0", "test", false)),
+                createNode("group:d:1.0", "provided", false, b));
+    }
+
+    private static DependencyNode filter(DependencyNode root, DependencySelector selector) {
+        return new DependencyGraphFilter(selector, null).filter(root);
+    }
+
+    private static List<String> render(DependencyNode root) throws IOException {
+        List<String> lines = new ArrayList<>();
+        new DependencyTreeRenderer(-1, 0).render(root, line -> lines.add(line.toString()));
+        return lines;
+    }
+
+    private static DefaultDependencyNode createNode(String coordinates, String scope, boolean isOptional, DependencyNode... children) {
+        DefaultDependencyNode node = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coordinates), scope, isOptional));
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+}
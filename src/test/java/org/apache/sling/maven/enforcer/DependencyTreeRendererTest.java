@@ -0,0 +1,112 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DependencyTreeRendererTest {
+
+    @Test
+    void testSharedNodesAndCycles() throws IOException {
+        // root -> a -> shared, root -> b -> shared, shared -> a (cycle)
+        DefaultDependencyNode shared = createNode("group:shared:1.0");
+        DefaultDependencyNode a = createNode("group:a:1.0", shared);
+        DependencyNode root = createNode("group:root:1.0", a, createNode("group:b:1.0", shared));
+        shared.setChildren(new ArrayList<>(Collections.singletonList(a)));
+        DependencyTreeRenderer renderer = new DependencyTreeRenderer(-1, 0);
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (provided)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:shared:jar:1.0 (provided)",
+                "    group:b:jar:1.0 (provided)"),
+                render(renderer, root));
+        Assertions.assertEquals(4, renderer.getNumRenderedNodes());
+        Assertions.assertFalse(renderer.isTruncated());
+    }
+
+    @Test
+    void testLimits() throws IOException {
+        DependencyNode root = createNode("group:root:1.0",
+                createNode("group:a:1.0", createNode("group:c:1.0"), createNode("group:d:1.0")),
+                createNode("group:b:1.0"));
+        DependencyTreeRenderer renderer = new DependencyTreeRenderer(1, 0);
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (provided)",
+                "    group:a:jar:1.0 (provided)",
+                "        ... (2 children below depth 1 omitted)",
+                "    group:b:jar:1.0 (provided)"),
+                render(renderer, root));
+        Assertions.assertTrue(renderer.isTruncated());
+
+        renderer = new DependencyTreeRenderer(-1, 3);
+        Assertions.assertEquals(Arrays.asList(
+                "group:root:jar:1.0 (provided)",
+                "    group:a:jar:1.0 (provided)",
+                "        group:c:jar:1.0 (provided)",
+                "... (stopped after 3 nodes)"),
+                render(renderer, root));
+        Assertions.assertEquals(3, renderer.getNumRenderedNodes());
+        Assertions.assertTrue(renderer.isTruncated());
+    }
+
+    @Test
+    void testDeepGraphToFile(@TempDir Path tempDir) throws IOException {
+        DefaultDependencyNode root = createNode("group:node:0");
+        DefaultDependencyNode node = root;
+        for (int i = 1; i < 1000; i++) {
+            DefaultDependencyNode child = createNode("group:node:" + i);
+            node.setChildren(new ArrayList<>(Collections.singletonList(child)));
+            node = child;
+        }
+        Path file = tempDir.resolve("sub").resolve("tree.txt");
+        DependencyTreeRenderer renderer = new DependencyTreeRenderer(-1, 0);
+        renderer.render(root, file);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assertions.assertEquals(1000, lines.size());
+        Assertions.assertEquals(4 * 999, lines.get(999).indexOf("group:node:jar:999"));
+    }
+
+    private static List<String> render(DependencyTreeRenderer renderer, DependencyNode root) throws IOException {
+        List<String> lines = new ArrayList<>();
+        renderer.render(root, line -> lines.add(line.toString()));
+        return lines;
+    }
+
+    private static DefaultDependencyNode createNode(String coordinates, DependencyNode... children) {
+        DefaultDependencyNode node = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coordinates), "provided"));
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+}
@@ -0,0 +1,68 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExcludesMatcherTest {
+
+    @Test
+    void testMatches() {
+        ExcludesMatcher matcher = ExcludesMatcher.compile(Arrays.asList("org.example", "*:myArtifact", "*:*:zip", "org.other:*:*:tests", "org.exact:exact:jar:"));
+        Assertions.assertTrue(matcher.matches(new DefaultArtifact("org.example:anyArtifact:1.0")));
+        Assertions.assertFalse(matcher.matches(new DefaultArtifact("org.example.sub:anyArtifact:1.0")));
+        Assertions.assertTrue(matcher.matches(new DefaultArtifact("org.any:myArtifact:1.0")));
+        Assertions.assertTrue(matcher.matches(new DefaultArtifact("org.any:anyArtifact:zip:1.0")));
+        Assertions.assertFalse(matcher.matches(new DefaultArtifact("org.other:anyArtifact:1.0")));
+        Assertions.assertTrue(matcher.matches(new DefaultArtifact("org.other:anyArtifact:jar:tests:1.0")));
+        Assertions.assertTrue(matcher.matches(new DefaultArtifact("org.exact:exact:jar:1.0")));
+        Assertions.assertTrue(matcher.matches(new DefaultArtifact("org.exact:exact:jar:sources:1.0")));
+        Assertions.assertFalse(matcher.matches(new DefaultArtifact("org.exact:exact:pom:1.0")));
+        Assertions.assertEquals(ExcludesMatcher.compile(Arrays.asList("*:*:zip", "org.example:*")).hashCode(), ExcludesMatcher.compile(Arrays.asList("org.example", "*:*:zip:*")).hashCode());
+        Assertions.assertEquals(ExcludesMatcher.compile(Arrays.asList("*:*:zip", "org.example:*")), ExcludesMatcher.compile(Arrays.asList("org.example", "*:*:zip:*")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExcludesMatcher.compile(Collections.singletonList("a:b:c:d:e")));
+    }
+
+    @Test
+    void testLoadIsCached(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("excludes.txt");
+        Files.write(file, Arrays.asList("# comment", "", "org.example:myArtifact"), StandardCharsets.UTF_8);
+        ClassLoader classLoader = getClass().getClassLoader();
+        ExcludesMatcher matcher = ExcludesMatcher.load("excludes.txt", tempDir.toFile(), classLoader);
+        Assertions.assertEquals(Collections.singleton("org.example:myArtifact:*:*"), matcher.getPatterns());
+        Assertions.assertSame(matcher, ExcludesMatcher.load(file.toString(), null, classLoader));
+
+        Files.write(file, Arrays.asList("org.example:myArtifact", "org.example:myOtherArtifact"), StandardCharsets.UTF_8);
+        Assertions.assertTrue(file.toFile().setLastModified(file.toFile().lastModified() + 2000));
+        Assertions.assertEquals(2, ExcludesMatcher.load(file.toString(), null, classLoader).getPatterns().size());
+
+        Assertions.assertThrows(IOException.class, () -> ExcludesMatcher.load("non-existing.txt", tempDir.toFile(), classLoader));
+    }
+}
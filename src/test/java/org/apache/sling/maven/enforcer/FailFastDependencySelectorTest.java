@@ -0,0 +1,96 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.DependencySelector;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FailFastDependencySelectorTest {
+
+    @Test
+    void testCancelsAfterMaxViolations() throws IOException {
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Collections.singletonList(new DefaultArtifact("group:present:1.0")));
+        FailFastDependencySelector selector = new FailFastDependencySelector(index, 2);
+        Dependency project = dependency("group:project:1.0");
+        Dependency direct = dependency("group:present:2.0");
+        DependencySelector projectSelector = selector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, project, Collections.emptyList()));
+        Assertions.assertTrue(projectSelector.selectDependency(direct));
+        DependencySelector directSelector = projectSelector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, direct, Collections.emptyList()));
+        // the same artifact reached twice is only counted once
+        Assertions.assertTrue(directSelector.selectDependency(dependency("group:missing:1.0")));
+        Assertions.assertTrue(projectSelector.selectDependency(dependency("group:missing:1.1")));
+        Assertions.assertEquals(1, selector.getNumViolations());
+        Assertions.assertThrows(FailFastDependencySelector.ViolationLimitReachedException.class, () -> directSelector.selectDependency(dependency("group:other-missing:1.0")));
+        // all other collections are cancelled as well
+        Assertions.assertThrows(FailFastDependencySelector.ViolationLimitReachedException.class, () -> projectSelector.selectDependency(direct));
+
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        Assertions.assertEquals(2, selector.report(log, null));
+        Assertions.assertEquals(Arrays.asList(
+                "Dependency group:missing:jar:1.0 (provided) via group:present:jar:2.0 not found as runtime dependency (unverified candidate found before conflict resolution)!",
+                "Dependency group:other-missing:jar:1.0 (provided) via group:present:jar:2.0 not found as runtime dependency (unverified candidate found before conflict resolution)!"),
+                log.getWarningsOrErrors());
+    }
+
+    @Test
+    void testViolationsOfLosingVersionsAreUnverified(@TempDir Path reportDirectory) throws IOException {
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.asList(new DefaultArtifact("group:a:1.0"), new DefaultArtifact("group:b:1.0")));
+        FailFastDependencySelector selector = new FailFastDependencySelector(index, 1);
+        DependencySelector projectSelector = selector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, dependency("group:project:1.0"), Collections.emptyList()));
+        // root -> b:1.0 and root -> a:1.0 -> b:2.0 -> c:1.0, i.e. the subtree of b:2.0 loses the conflict resolution against the nearer b:1.0
+        // (so c is not part of the resolved graph) but is still checked during the collection
+        Assertions.assertTrue(projectSelector.selectDependency(dependency("group:b:1.0")));
+        Dependency a = dependency("group:a:1.0");
+        Assertions.assertTrue(projectSelector.selectDependency(a));
+        DependencySelector aSelector = projectSelector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, a, Collections.emptyList()));
+        Dependency losingB = dependency("group:b:2.0");
+        Assertions.assertTrue(aSelector.selectDependency(losingB));
+        DependencySelector losingBSelector = aSelector.deriveChildSelector(new SubtreeDependencyCollector.SimpleDependencyCollectionContext(null, losingB, Collections.emptyList()));
+        Assertions.assertThrows(FailFastDependencySelector.ViolationLimitReachedException.class, () -> losingBSelector.selectDependency(dependency("group:c:1.0")));
+
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        try (ViolationReportWriter reportWriter = new ViolationReportWriter(reportDirectory, "report", Collections.singletonList(ViolationReportWriter.Format.JSONL), "pom.xml", true)) {
+            Assertions.assertEquals(1, selector.report(log, reportWriter));
+        }
+        // the violation is only reported as candidate
+        Assertions.assertEquals(Collections.singletonList(
+                "Dependency group:c:jar:1.0 (provided) via group:a:jar:1.0 -> group:b:jar:2.0 not found as runtime dependency (unverified candidate found before conflict resolution)!"),
+                log.getWarningsOrErrors());
+        List<String> reportLines = Files.readAllLines(ViolationReportWriter.getFile(reportDirectory, "report", ViolationReportWriter.Format.JSONL), StandardCharsets.UTF_8);
+        Assertions.assertEquals(1, reportLines.size());
+        Assertions.assertTrue(reportLines.get(0).contains("\"unverified\": true"), reportLines.get(0));
+    }
+
+    private static Dependency dependency(String coordinates) {
+        return new Dependency(new DefaultArtifact(coordinates), "provided");
+    }
+}
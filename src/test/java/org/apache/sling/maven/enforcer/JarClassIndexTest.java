@@ -0,0 +1,128 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JarClassIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testJar() throws IOException {
+        Path jar = createJar(tempDir.resolve("test.jar"), "org/example/Foo.class", "org/example/Foo$Bar.class",
+                "META-INF/versions/11/org/example/Baz.class", "module-info.class", "org/example/package-info.class", "org/example/readme.txt", "org/example/");
+        JarClassIndex index = JarClassIndex.of(jar.toFile());
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertTrue(index.contains("org/example/Foo"));
+        Assertions.assertTrue(index.contains("org/example/Foo$Bar"));
+        Assertions.assertTrue(index.contains("org/example/Baz"));
+        Assertions.assertFalse(index.contains("module-info"));
+        Assertions.assertFalse(index.contains("org/example/package-info"));
+        Assertions.assertFalse(index.contains("org/example/readme"));
+        Assertions.assertNotNull(index.getChecksum());
+        Assertions.assertSame(index, JarClassIndex.of(jar.toFile()));
+    }
+
+    @Test
+    void testJarsWithSameCentralDirectoryShareIndex() throws IOException {
+        Path jar1 = createJar(tempDir.resolve("test1.jar"), "org/example/Foo.class");
+        Path jar2 = tempDir.resolve("test2.jar");
+        Files.copy(jar1, jar2);
+        JarClassIndex index1 = JarClassIndex.of(jar1.toFile());
+        Assertions.assertSame(index1, JarClassIndex.of(jar2.toFile()));
+        Path jar3 = createJar(tempDir.resolve("test3.jar"), "org/example/Bar.class");
+        JarClassIndex index3 = JarClassIndex.of(jar3.toFile());
+        Assertions.assertNotEquals(index1.getChecksum(), index3.getChecksum());
+        Assertions.assertTrue(index3.contains("org/example/Bar"));
+        Assertions.assertFalse(index3.contains("org/example/Foo"));
+    }
+
+    @Test
+    void testCacheEviction() throws IOException {
+        JarClassIndex.Cache cache = new JarClassIndex.Cache(3);
+        File jar1 = createJar(tempDir.resolve("test1.jar"), "org/example/Foo.class", "org/example/Bar.class").toFile();
+        File jar2 = createJar(tempDir.resolve("test2.jar"), "org/example/Baz.class").toFile();
+        File jar3 = createJar(tempDir.resolve("test3.jar"), "org/example/Qux.class").toFile();
+        File tooLargeJar = createJar(tempDir.resolve("test4.jar"), "a/A.class", "b/B.class", "c/C.class", "d/D.class").toFile();
+        JarClassIndex index1 = JarClassIndex.of(jar1, cache);
+        JarClassIndex.of(jar2, cache);
+        Assertions.assertEquals(3, cache.getNumClassNames());
+        Assertions.assertSame(index1, JarClassIndex.of(jar1, cache));
+        // evicts the least recently used index of jar2
+        JarClassIndex.of(jar3, cache);
+        Assertions.assertEquals(3, cache.getNumClassNames());
+        Assertions.assertSame(index1, JarClassIndex.of(jar1, cache));
+        // evicts the least recently used index of jar3
+        Assertions.assertTrue(JarClassIndex.of(jar2, cache).contains("org/example/Baz"));
+        Assertions.assertEquals(3, cache.getNumClassNames());
+        Assertions.assertSame(index1, JarClassIndex.of(jar1, cache));
+        // never cached
+        Assertions.assertEquals(4, JarClassIndex.of(tooLargeJar, cache).size());
+        Assertions.assertTrue(cache.getNumClassNames() <= 3);
+    }
+
+    @Test
+    void testDirectory() throws IOException {
+        Path classFile = tempDir.resolve("org/example/Foo.class");
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, new byte[0]);
+        JarClassIndex index = JarClassIndex.of(tempDir.toFile());
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertTrue(index.contains("org/example/Foo"));
+        Assertions.assertNull(index.getChecksum());
+    }
+
+    @Test
+    void testInvalidJar() throws IOException {
+        Path file = tempDir.resolve("invalid.jar");
+        Files.write(file, new byte[] { 1, 2, 3 });
+        Assertions.assertThrows(IOException.class, () -> JarClassIndex.of(file.toFile()));
+    }
+
+    /**
+     * Creates a JAR containing empty entries with the given names.
+     * @param jar the path of the JAR to create
+     * @param entryNames the names of the entries
+     * @return the given path
+     * @throws IOException in case the JAR could not be written
+     */
+    static Path createJar(Path jar, String... entryNames) throws IOException {
+        try (OutputStream output = Files.newOutputStream(jar);
+             JarOutputStream jarOutput = new JarOutputStream(output)) {
+            for (String entryName : entryNames) {
+                jarOutput.putNextEntry(new ZipEntry(entryName));
+                jarOutput.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,160 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MissingArtifactsDependencyVisitorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSharedNodeIsReportedOnce() {
+        // root -> a -> missing, root -> b -> c -> missing (same node instance) and b -> missing (separate node instance)
+        DependencyNode missing = createNode("group:missing:1.0");
+        DependencyNode root = createNode("group:root:1.0",
+                createNode("group:a:1.0", missing),
+                createNode("group:b:1.0", createNode("group:c:1.0", missing), createNode("group:missing:1.0")));
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        MissingArtifactsDependencyVisitor visitor = check(root, log, 1, "group:a:1.0", "group:b:1.0", "group:c:1.0");
+        Assertions.assertEquals(1, visitor.getNumMissingArtifacts());
+        Assertions.assertEquals(4, visitor.getNumCheckedArtifacts());
+        Assertions.assertEquals(Collections.singletonList(
+                "Dependency group:missing:jar:1.0 (provided) via group:a:jar:1.0 not found as runtime dependency! Reachable via 3 paths (only the shortest one is shown)."),
+                log.getWarningsOrErrors());
+
+        log = new CollectingEnforcerLogger();
+        check(root, log, 2, "group:a:1.0", "group:b:1.0", "group:c:1.0");
+        Assertions.assertEquals(Collections.singletonList(
+                "Dependency group:missing:jar:1.0 (provided) via group:a:jar:1.0 not found as runtime dependency! Reachable via 3 paths, further ones:" + System.lineSeparator()
+                + "  via group:b:jar:1.0 -> group:c:jar:1.0" + System.lineSeparator()
+                + "  ... and 1 more"),
+                log.getWarningsOrErrors());
+    }
+
+    @Test
+    void testCycleAndDirectDependency() {
+        DefaultDependencyNode a = createNode("group:a:1.0");
+        DependencyNode root = createNode("group:root:1.0", a, createNode("group:present:1.0"));
+        // a -> b -> a
+        a.setChildren(new ArrayList<>(Collections.singletonList(createNode("group:b:1.0", a))));
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        MissingArtifactsDependencyVisitor visitor = check(root, log, 10, "group:present:1.0");
+        Assertions.assertEquals(2, visitor.getNumMissingArtifacts());
+        Assertions.assertEquals(Arrays.asList(
+                "Dependency group:a:jar:1.0 (provided) not found as runtime dependency!",
+                "Dependency group:b:jar:1.0 (provided) via group:a:jar:1.0 not found as runtime dependency!"),
+                log.getWarningsOrErrors());
+    }
+
+    @Test
+    void testClassLevelCheck() throws IOException {
+        DependencyNode root = createNode("group:root:1.0", createNode("group:needed:1.0"), createNode("group:unneeded:1.0"));
+        Path neededJar = JarClassIndexTest.createJar(tempDir.resolve("needed.jar"), "org/example/Needed.class");
+        Path unneededJar = JarClassIndexTest.createJar(tempDir.resolve("unneeded.jar"), "org/example/Unneeded.class");
+        ClassLevelChecker classLevelChecker = new ClassLevelChecker(Collections.singleton("org/example/Needed"), Collections.emptyList(),
+                artifact -> (artifact.getArtifactId().equals("needed") ? neededJar : unneededJar).toFile(), new CollectingEnforcerLogger());
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        MissingArtifactsDependencyVisitor visitor = new MissingArtifactsDependencyVisitor(new RuntimeArtifactsIndex(Collections.emptyList()),
+                new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER), log, 1, 0, null, classLevelChecker);
+        root.accept(visitor);
+        Assertions.assertEquals(1, visitor.getNumMissingArtifacts());
+        Assertions.assertEquals(1, visitor.getNumIgnoredArtifacts());
+        Assertions.assertEquals(Collections.singletonList(
+                "Dependency group:needed:jar:1.0 (provided) not found as runtime dependency! Classes referenced by the project: org.example.Needed"),
+                log.getWarningsOrErrors());
+    }
+
+    @Test
+    void testClassLevelCheckWithIncompatibleVersion() throws IOException {
+        DependencyNode root = createNode("group:root:1.0", createNode("group:needed:2.0"), createNode("group:unneeded:2.0"));
+        Path neededJar = JarClassIndexTest.createJar(tempDir.resolve("needed.jar"), "org/example/Needed.class");
+        Path unneededJar = JarClassIndexTest.createJar(tempDir.resolve("unneeded.jar"), "org/example/Unneeded.class");
+        ClassLevelChecker classLevelChecker = new ClassLevelChecker(Collections.singleton("org/example/Needed"), Collections.emptyList(),
+                artifact -> (artifact.getArtifactId().equals("needed") ? neededJar : unneededJar).toFile(), new CollectingEnforcerLogger());
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.asList(new DefaultArtifact("group:needed:1.0"), new DefaultArtifact("group:unneeded:1.0")));
+        MissingArtifactsDependencyVisitor visitor = new MissingArtifactsDependencyVisitor(index,
+                new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER), log, 1, 0, null, classLevelChecker);
+        root.accept(visitor);
+        Assertions.assertEquals(1, visitor.getNumMissingArtifacts());
+        Assertions.assertEquals(1, visitor.getNumIgnoredArtifacts());
+        // no message about the incompatible version of the ignored artifact
+        Assertions.assertEquals(Arrays.asList(
+                "Found provided dependency group:needed:jar:2.0 only with potentially incompatible version 1.0 in runtime classpath",
+                "Dependency group:needed:jar:2.0 (provided) not found as runtime dependency! Classes referenced by the project: org.example.Needed"),
+                log.getWarningsOrErrors());
+    }
+
+    @Test
+    void testArtifactVerdictsAreSharedBetweenModules() {
+        ReactorCache reactorCache = new ReactorCache(10);
+        List<CollectingEnforcerLogger> logs = new ArrayList<>();
+        List<MissingArtifactsDependencyVisitor> visitors = new ArrayList<>();
+        // two modules with the same runtime classpath
+        for (int module = 0; module < 2; module++) {
+            RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.asList(new DefaultArtifact("group:a:1.0"), new DefaultArtifact("group:old:1.0")));
+            CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+            MissingArtifactsDependencyVisitor visitor = new MissingArtifactsDependencyVisitor(index, new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER),
+                    log, 1, 0, null, null, reactorCache.getArtifactVerdictCache(index, VersionCompatibilityStrategy.SEMVER));
+            createNode("group:root:1.0", createNode("group:a:1.0", createNode("group:missing:1.0")), createNode("group:old:2.0")).accept(visitor);
+            logs.add(log);
+            visitors.add(visitor);
+        }
+        Assertions.assertEquals(0, visitors.get(0).getNumArtifactVerdictCacheHits());
+        Assertions.assertEquals(3, visitors.get(1).getNumArtifactVerdictCacheHits());
+        // the cached verdicts lead to the same messages
+        Assertions.assertEquals(2, visitors.get(1).getNumMissingArtifacts());
+        Assertions.assertEquals(Arrays.asList(
+                "Dependency group:missing:jar:1.0 (provided) via group:a:jar:1.0 not found as runtime dependency!",
+                "Found provided dependency group:old:jar:2.0 only with potentially incompatible version 1.0 in runtime classpath",
+                "Dependency group:old:jar:2.0 (provided) not found as runtime dependency!"),
+                logs.get(0).getWarningsOrErrors());
+        Assertions.assertEquals(logs.get(0).getWarningsOrErrors(), logs.get(1).getWarningsOrErrors());
+    }
+
+    private static MissingArtifactsDependencyVisitor check(DependencyNode root, CollectingEnforcerLogger log, int maxReportedPaths, String... runtimeArtifacts) {
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.stream(runtimeArtifacts).map(DefaultArtifact::new).collect(Collectors.toList()));
+        MissingArtifactsDependencyVisitor visitor = new MissingArtifactsDependencyVisitor(index, new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER), log, maxReportedPaths, 0);
+        root.accept(visitor);
+        return visitor;
+    }
+
+    private static DefaultDependencyNode createNode(String coordinates, DependencyNode... children) {
+        DefaultDependencyNode node = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coordinates), "provided"));
+        node.setChildren(new ArrayList<>(Arrays.asList(children)));
+        return node;
+    }
+}
@@ -0,0 +1,63 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ProjectGraphDependencyCollectorTest {
+
+    private static final String PROJECT_ID = "group:project:jar:1.0";
+
+    @Test
+    void testBuildChildrenByParentId() {
+        Artifact direct = createArtifact("direct", "1.0", PROJECT_ID);
+        Artifact transitive = createArtifact("transitive", "2.0", PROJECT_ID, direct.getId());
+        Map<String, Map<String, Artifact>> childrenByParentId = ProjectGraphDependencyCollector.buildChildrenByParentId(Arrays.asList(direct, transitive), PROJECT_ID);
+        Assertions.assertEquals(2, childrenByParentId.size());
+        Assertions.assertSame(direct, childrenByParentId.get(PROJECT_ID).get("group:direct:jar:"));
+        Assertions.assertSame(transitive, childrenByParentId.get(direct.getId()).get("group:transitive:jar:"));
+    }
+
+    @Test
+    void testBuildChildrenByParentIdWithoutTrail() {
+        Artifact direct = createArtifact("direct", "1.0");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ProjectGraphDependencyCollector.buildChildrenByParentId(Collections.singletonList(direct), PROJECT_ID));
+    }
+
+    private static Artifact createArtifact(String artifactId, String version, String... parentIds) {
+        Artifact artifact = new DefaultArtifact("group", artifactId, version, "compile", "jar", null, new DefaultArtifactHandler("jar"));
+        if (parentIds.length > 0) {
+            List<String> trail = new ArrayList<>(Arrays.asList(parentIds));
+            trail.add(artifact.getId());
+            artifact.setDependencyTrail(trail);
+        }
+        return artifact;
+    }
+}
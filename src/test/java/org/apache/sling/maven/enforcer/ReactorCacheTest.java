@@ -0,0 +1,151 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.util.graph.selector.ScopeDependencySelector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReactorCacheTest {
+
+    @Test
+    void testGetOrCreateSharesCacheWithinSession() {
+        DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+        ReactorCache cache = ReactorCache.getOrCreate(session, 10);
+        Assertions.assertSame(cache, ReactorCache.getOrCreate(session, 20));
+        Assertions.assertNotSame(cache, ReactorCache.getOrCreate(new DefaultRepositorySystemSession(), 10));
+        Assertions.assertSame(cache.getVersionCompatibilityChecker(VersionCompatibilityStrategy.OSGI), cache.getVersionCompatibilityChecker(VersionCompatibilityStrategy.OSGI));
+    }
+
+    @Test
+    void testArtifactVerdictCacheIsSharedPerRuntimeClasspathAndStrategy() {
+        ReactorCache cache = new ReactorCache(10);
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.asList(new DefaultArtifact("group:a:1.0"), new DefaultArtifact("group:b:1.0")));
+        ReactorCache.ArtifactVerdictCache verdictCache = cache.getArtifactVerdictCache(index, VersionCompatibilityStrategy.SEMVER);
+        // another module with the same runtime classpath
+        Assertions.assertSame(verdictCache, cache.getArtifactVerdictCache(
+                new RuntimeArtifactsIndex(Arrays.asList(new DefaultArtifact("group:a:1.0"), new DefaultArtifact("group:b:1.0"))), VersionCompatibilityStrategy.SEMVER));
+        Assertions.assertNotSame(verdictCache, cache.getArtifactVerdictCache(index, VersionCompatibilityStrategy.OSGI));
+        Assertions.assertNotSame(verdictCache, cache.getArtifactVerdictCache(
+                new RuntimeArtifactsIndex(Arrays.asList(new DefaultArtifact("group:a:1.0"), new DefaultArtifact("group:b:1.1"))), VersionCompatibilityStrategy.SEMVER));
+
+        ReactorCache.ArtifactVerdictCache boundedCache = new ReactorCache.ArtifactVerdictCache(2);
+        boundedCache.put(new DefaultArtifact("group:a:1.0"), new ReactorCache.ArtifactVerdict(true, Collections.emptyList()));
+        boundedCache.put(new DefaultArtifact("group:c:1.0"), new ReactorCache.ArtifactVerdict(false, Collections.singletonList("incompatible")));
+        Assertions.assertTrue(boundedCache.get(new DefaultArtifact("group:a:1.0")).isContained());
+        // evicts the least recently used verdict, i.e. the one of c
+        boundedCache.put(new DefaultArtifact("group:d:1.0"), new ReactorCache.ArtifactVerdict(false, Collections.emptyList()));
+        Assertions.assertEquals(2, boundedCache.size());
+        Assertions.assertNull(boundedCache.get(new DefaultArtifact("group:c:1.0")));
+        Assertions.assertNotNull(boundedCache.get(new DefaultArtifact("group:a:1.0")));
+    }
+
+    @Test
+    void testSubtreesAreCopiedAndEvicted() {
+        ReactorCache cache = new ReactorCache(5);
+        ReactorCache.SubtreeKey key1 = key("group:artifact1:1.0");
+        ReactorCache.SubtreeKey key2 = key("group:artifact2:1.0");
+        Assertions.assertNull(cache.getSubtree(key1));
+
+        DependencyNode subtree1 = createSubtree("group:artifact1:1.0", 3);
+        cache.putSubtree(key1, subtree1);
+        Assertions.assertEquals(3, cache.getNumNodes());
+        DependencyNode copy = cache.getSubtree(key("group:artifact1:1.0"));
+        Assertions.assertNotSame(subtree1, copy);
+        Assertions.assertEquals(subtree1.getArtifact(), copy.getArtifact());
+        Assertions.assertEquals(3, ReactorCache.countNodes(copy));
+        // modifying the copy must not affect the cache
+        copy.setChildren(new ArrayList<>());
+        Assertions.assertEquals(3, ReactorCache.countNodes(cache.getSubtree(key1)));
+        Assertions.assertEquals(2, cache.getNumHits());
+        Assertions.assertEquals(1, cache.getNumMisses());
+
+        // exceeds the limit, evicts the least recently used subtree
+        cache.putSubtree(key2, createSubtree("group:artifact2:1.0", 3));
+        Assertions.assertEquals(3, cache.getNumNodes());
+        Assertions.assertNull(cache.getSubtree(key1));
+        Assertions.assertNotNull(cache.getSubtree(key2));
+
+        // subtrees exceeding the limit on their own are not cached at all
+        cache.putSubtree(key1, createSubtree("group:artifact1:1.0", 6));
+        Assertions.assertNull(cache.getSubtree(key1));
+    }
+
+    @Test
+    void testConcurrentCollectionsOfSameSubtreeAreDeduplicated() throws Exception {
+        ReactorCache cache = new ReactorCache(100);
+        ReactorCache.SubtreeKey key = key("group:artifact1:1.0");
+        AtomicInteger numCollections = new AtomicInteger();
+        CountDownLatch collectionStarted = new CountDownLatch(1);
+        CountDownLatch finishCollection = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<DependencyNode> first = executor.submit(() -> cache.getOrCollect(key, () -> {
+                numCollections.incrementAndGet();
+                collectionStarted.countDown();
+                finishCollection.await();
+                return createSubtree("group:artifact1:1.0", 3);
+            }));
+            collectionStarted.await();
+            Future<DependencyNode> second = executor.submit(() -> cache.getOrCollect(key, () -> {
+                numCollections.incrementAndGet();
+                return createSubtree("group:artifact1:1.0", 3);
+            }));
+            finishCollection.countDown();
+            Assertions.assertEquals(3, ReactorCache.countNodes(first.get()));
+            Assertions.assertEquals(3, ReactorCache.countNodes(second.get()));
+            Assertions.assertNotSame(first.get(), second.get());
+            Assertions.assertEquals(1, numCollections.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ReactorCache.SubtreeKey key(String coordinates) {
+        return new ReactorCache.SubtreeKey(new Dependency(new DefaultArtifact(coordinates), "compile"), new ScopeDependencySelector("test"), null, null, null, Collections.emptyList());
+    }
+
+    /** creates a node with {@code numNodes - 1} children sharing one grandchild */
+    private static DependencyNode createSubtree(String coordinates, int numNodes) {
+        DefaultDependencyNode root = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coordinates), "compile"));
+        DefaultDependencyNode shared = new DefaultDependencyNode(new Dependency(new DefaultArtifact("group:shared:1.0"), "provided"));
+        root.setChildren(new ArrayList<>());
+        for (int i = 0; i < numNodes - 2; i++) {
+            DefaultDependencyNode child = new DefaultDependencyNode(new Dependency(new DefaultArtifact("group:child" + i + ":1.0"), "compile"));
+            child.setChildren(new ArrayList<>(Arrays.asList(shared)));
+            root.getChildren().add(child);
+        }
+        return root;
+    }
+}
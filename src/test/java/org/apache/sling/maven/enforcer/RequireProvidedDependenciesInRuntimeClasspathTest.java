@@ -1,5 +1,7 @@
 package org.apache.sling.maven.enforcer;
 
+import java.util.Arrays;
+
 import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.junit.jupiter.api.Assertions;
@@ -39,6 +41,16 @@ class RequireProvidedDependenciesInRuntimeClasspathTest {
         Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.isVersionCompatible("1.1", "2.0"));
     }
 
+    @Test
+    void testIsVersionRange() {
+        Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.isVersionRange("[1.0,2.0)"));
+        Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.isVersionRange("(,1.0],[1.2,)"));
+        Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.isVersionRange("[1.0]"));
+        Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.isVersionRange("1.0"));
+        Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.isVersionRange("1.0-SNAPSHOT"));
+        Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.isVersionRange(null));
+    }
+
     @Test
     void testAreArtifactsEqualDisregardingVersion() {
         Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.areArtifactsEqualDisregardingVersion(new DefaultArtifact("myArtifact:myGroup:1.0.0"), new DefaultArtifact("myArtifact:myGroup:2.0.0")));
@@ -46,4 +58,22 @@ class RequireProvidedDependenciesInRuntimeClasspathTest {
         Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.areArtifactsEqualDisregardingVersion(new DefaultArtifact("myArtifact:myGroup:myClassifier:myExtension:1.0.0"), new DefaultArtifact("myArtifact:myGroup:myClassifier:myExtension1:2.0.0")));
         Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.areArtifactsEqualDisregardingVersion(new DefaultArtifact("myArtifact:myGroup:myClassifier:myExtension:1.0.0"), new DefaultArtifact("myArtifact:myGroup:myClassifier1:myExtension:2.0.0")));
     }
+
+    @Test
+    void testIsCompatibleArtifactContainedInIndex() throws InvalidVersionSpecificationException {
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.asList(
+                new DefaultArtifact("myGroup:myArtifact:1.0.0"),
+                new DefaultArtifact("myGroup:myArtifact:myExtension:myClassifier:2.0.0"),
+                new DefaultArtifact("myGroup:myOtherArtifact:1.2.0"),
+                new DefaultArtifact("myGroup:myOtherArtifact:2.1.0")));
+        VersionCompatibilityChecker checker = new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER);
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(new DefaultArtifact("myGroup:myArtifact:1.0.0"), index, checker, log));
+        Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(new DefaultArtifact("myGroup:myArtifact:myExtension:myClassifier:2.0.0"), index, checker, log));
+        Assertions.assertFalse(RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(new DefaultArtifact("myGroup:myUnknownArtifact:1.0.0"), index, checker, log));
+        Assertions.assertTrue(log.getWarningsOrErrors().isEmpty());
+        // the first incompatible version leads to a warning, the second one is compatible
+        Assertions.assertTrue(RequireProvidedDependenciesInRuntimeClasspath.isCompatibleArtifactContainedInIndex(new DefaultArtifact("myGroup:myOtherArtifact:2.0.0"), index, checker, log));
+        Assertions.assertEquals(Arrays.asList("Found provided dependency myGroup:myOtherArtifact:jar:2.0.0 only with potentially incompatible version 1.2.0 in runtime classpath"), log.getWarningsOrErrors());
+    }
 }
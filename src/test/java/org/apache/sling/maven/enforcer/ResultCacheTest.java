@@ -0,0 +1,75 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultCacheTest {
+
+    @Test
+    void testWriteAndRead(@TempDir Path tempDir) throws IOException {
+        ResultCache cache = new ResultCache(tempDir.resolve("sub").resolve("result.properties"));
+        Assertions.assertNull(cache.read("fingerprint1"));
+
+        cache.write("fingerprint1", new ResultCache.Result(2, Arrays.asList(
+                new ResultCache.Message(ResultCache.Message.Level.WARN_OR_ERROR, "Dependency a:b:jar:1.0 (provided) not found as runtime dependency!"),
+                new ResultCache.Message(ResultCache.Message.Level.ERROR, "Invalid version\n with line break"))));
+        Assertions.assertNull(cache.read("fingerprint2"));
+
+        ResultCache.Result result = cache.read("fingerprint1");
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(2, result.getNumViolations());
+        CollectingEnforcerLogger log = new CollectingEnforcerLogger();
+        result.replay(log);
+        Assertions.assertEquals(Arrays.asList("Dependency a:b:jar:1.0 (provided) not found as runtime dependency!"), log.getWarningsOrErrors());
+        Assertions.assertEquals(ResultCache.Message.Level.ERROR, result.getMessages().get(1).getLevel());
+        Assertions.assertEquals("Invalid version\n with line break", result.getMessages().get(1).getText());
+    }
+
+    @Test
+    void testFingerprint() {
+        String fingerprint = new ResultCache.Fingerprint().add("a", "b").add("c", true).build();
+        Assertions.assertEquals(64, fingerprint.length());
+        Assertions.assertEquals(fingerprint, new ResultCache.Fingerprint().add("a", "b").add("c", true).build());
+        Assertions.assertNotEquals(fingerprint, new ResultCache.Fingerprint().add("a", "b").add("c", false).build());
+    }
+
+    @Test
+    void testCodeFingerprint() throws IOException {
+        // loaded from target/classes
+        String fingerprint = ResultCache.getCodeFingerprint(ResultCache.class);
+        Assertions.assertNotNull(fingerprint);
+        Assertions.assertEquals(64, fingerprint.length());
+        Assertions.assertEquals(fingerprint, ResultCache.getCodeFingerprint(RequireProvidedDependenciesInRuntimeClasspath.class));
+        // from a JAR file
+        String jarFingerprint = ResultCache.getCodeFingerprint(Test.class);
+        Assertions.assertNotNull(jarFingerprint);
+        Assertions.assertNotEquals(fingerprint, jarFingerprint);
+        Assertions.assertEquals(jarFingerprint, ResultCache.getCodeFingerprint(Assertions.class));
+        // from the JRE
+        Assertions.assertNull(ResultCache.getCodeFingerprint(String.class));
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RuleMetricsTest {
+
+    @Test
+    void testSummaryAndJson(@TempDir Path tempDir) throws IOException {
+        RuleMetrics metrics = new RuleMetrics("group:\"artifact\":jar:1.0");
+        metrics.add(RuleMetrics.Phase.COLLECTION, TimeUnit.MILLISECONDS.toNanos(12));
+        metrics.add(RuleMetrics.Phase.SELECTOR_SETUP, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.add(RuleMetrics.Phase.COLLECTION, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.set("visitedNodes", 42);
+        metrics.set("violations", 2);
+        metrics.stop();
+        Assertions.assertEquals(15, metrics.getPhaseMillis(RuleMetrics.Phase.COLLECTION));
+        Assertions.assertTrue(metrics.toSummary().matches("Metrics: total=\\d+ms, selectorSetup=1ms, collection=15ms, visitedNodes=42, violations=2"), metrics.toSummary());
+
+        Path file = tempDir.resolve("sub/metrics.json");
+        metrics.write(file);
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Assertions.assertTrue(json.contains("\"project\": \"group:\\\"artifact\\\":jar:1.0\","), json);
+        Assertions.assertTrue(json.contains("\"phaseMillis\": {\n    \"selectorSetup\": 1,\n    \"collection\": 15\n  },"), json);
+        Assertions.assertTrue(json.contains("\"counters\": {\n    \"visitedNodes\": 42,\n    \"violations\": 2\n  }\n}"), json);
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RuntimeArtifactsIndexTest {
+
+    @Test
+    void testGet() {
+        RuntimeArtifactsIndex index = new RuntimeArtifactsIndex(Arrays.asList(
+                new DefaultArtifact("group:a:2.0"),
+                new DefaultArtifact("group:a:jar:tests:1.0"),
+                new DefaultArtifact("group:a:1.0"),
+                new DefaultArtifact("group:a:zip:1.0"),
+                new DefaultArtifact("group:b:1.0")));
+        Assertions.assertEquals(5, index.size());
+        // the classpath order is kept
+        Assertions.assertEquals(Arrays.asList("group:a:jar:2.0", "group:a:jar:1.0"), getCoordinates(index, "group:a:3.0"));
+        Assertions.assertEquals(Arrays.asList("group:a:jar:tests:1.0"), getCoordinates(index, "group:a:jar:tests:3.0"));
+        Assertions.assertEquals(Arrays.asList("group:a:zip:1.0"), getCoordinates(index, "group:a:zip:3.0"));
+        Assertions.assertTrue(getCoordinates(index, "group:a:jar:sources:1.0").isEmpty());
+        Assertions.assertTrue(getCoordinates(index, "group:c:1.0").isEmpty());
+        Assertions.assertTrue(getCoordinates(index, "other:a:1.0").isEmpty());
+    }
+
+    private static List<String> getCoordinates(RuntimeArtifactsIndex index, String coordinates) {
+        return index.get(new DefaultArtifact(coordinates)).stream().map(entry -> entry.getArtifact().toString()).collect(Collectors.toList());
+    }
+}
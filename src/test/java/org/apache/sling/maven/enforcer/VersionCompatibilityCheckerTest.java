@@ -0,0 +1,74 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class VersionCompatibilityCheckerTest {
+
+    @Test
+    void testStrategies() throws InvalidVersionSpecificationException {
+        VersionCompatibilityChecker strict = new VersionCompatibilityChecker(VersionCompatibilityStrategy.STRICT);
+        VersionCompatibilityChecker semver = new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER);
+        VersionCompatibilityChecker osgi = new VersionCompatibilityChecker(VersionCompatibilityStrategy.OSGI);
+
+        Assertions.assertTrue(strict.isCompatible("1.0.0", "1.0.0"));
+        Assertions.assertFalse(strict.isCompatible("1.0.0", "1.0.1"));
+        Assertions.assertTrue(strict.isCompatible("[1,2)", "1.5"));
+
+        Assertions.assertTrue(semver.isCompatible("1.1.5", "1.1.0"));
+        Assertions.assertTrue(semver.isCompatible("1.1.5", "1.2.0"));
+        Assertions.assertFalse(semver.isCompatible("1.1", "2.0"));
+
+        Assertions.assertFalse(osgi.isCompatible("1.1.5", "1.1.0"));
+        Assertions.assertTrue(osgi.isCompatible("1.1.5", "1.1.5"));
+        Assertions.assertTrue(osgi.isCompatible("1.1.5", "1.2.0"));
+        Assertions.assertFalse(osgi.isCompatible("1.1.5", "2.0.0"));
+        Assertions.assertFalse(osgi.isCompatible("[1,2)", "2.0"));
+    }
+
+    @Test
+    void testResultsAreCachedAndBounded() throws InvalidVersionSpecificationException {
+        VersionCompatibilityChecker checker = new VersionCompatibilityChecker(VersionCompatibilityStrategy.SEMVER, 2);
+        Assertions.assertTrue(checker.isCompatible("1.0", "1.1"));
+        Assertions.assertTrue(checker.isCompatible("1.0", "1.1"));
+        Assertions.assertEquals(1, checker.getNumCachedResults());
+        Assertions.assertTrue(checker.isCompatible("2.0", "2.0"));
+        Assertions.assertEquals(2, checker.getNumCachedResults());
+        Assertions.assertEquals(1, checker.getNumCacheHits());
+        // exceeding the maximum size evicts the least recently used required version only, i.e. "2.0"
+        Assertions.assertTrue(checker.isCompatible("1.0", "1.1"));
+        Assertions.assertFalse(checker.isCompatible("3.0", "2.0"));
+        Assertions.assertEquals(2, checker.getNumCachedResults());
+        Assertions.assertEquals(2, checker.getNumCacheHits());
+        Assertions.assertTrue(checker.isCompatible("1.0", "1.1"));
+        Assertions.assertEquals(3, checker.getNumCacheHits());
+        Assertions.assertTrue(checker.isCompatible("2.0", "2.0"));
+        Assertions.assertEquals(3, checker.getNumCacheHits());
+    }
+
+    @Test
+    void testUnsupportedStrategy() {
+        Assertions.assertEquals(VersionCompatibilityStrategy.OSGI, VersionCompatibilityStrategy.fromString("osgi"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> VersionCompatibilityStrategy.fromString("unknown"));
+    }
+}
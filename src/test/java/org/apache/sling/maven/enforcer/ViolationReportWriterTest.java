@@ -0,0 +1,76 @@
+package org.apache.sling.maven.enforcer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ViolationReportWriterTest {
+
+    @Test
+    void testWriteJsonLinesAndSarif(@TempDir Path tempDir) throws IOException {
+        Path directory = tempDir.resolve("reports");
+        try (ViolationReportWriter writer = new ViolationReportWriter(directory, "report",
+                Arrays.asList(ViolationReportWriter.Format.JSONL, ViolationReportWriter.Format.SARIF), "file:/project/pom.xml", true)) {
+            writer.write(new ViolationReportWriter.Violation("group:missing:jar:1.0", "provided", false,
+                    Arrays.asList("group:a:jar:1.0", "group:b:jar:\"1\""), 3, Collections.emptyList()));
+            writer.write(new ViolationReportWriter.Violation("group:old:jar:2.0", "provided", true,
+                    Collections.emptyList(), 1, Collections.singletonList("1.0")));
+        }
+        List<String> lines = Files.readAllLines(directory.resolve("report.jsonl"), StandardCharsets.UTF_8);
+        Assertions.assertEquals(Arrays.asList(
+                "{\"dependency\": \"group:missing:jar:1.0\", \"scope\": \"provided\", \"optional\": false, \"reason\": \"missing\", "
+                + "\"path\": [\"group:a:jar:1.0\", \"group:b:jar:\\\"1\\\"\"], \"numPaths\": 3, "
+                + "\"message\": \"Dependency group:missing:jar:1.0 (provided) via group:a:jar:1.0 -> group:b:jar:\\\"1\\\" not found as runtime dependency! Reachable via 3 paths.\"}",
+                "{\"dependency\": \"group:old:jar:2.0\", \"scope\": \"provided\", \"optional\": true, \"reason\": \"incompatibleVersion\", "
+                + "\"path\": [], \"numPaths\": 1, \"runtimeVersions\": [\"1.0\"], "
+                + "\"message\": \"Dependency group:old:jar:2.0 (provided?) only found with potentially incompatible version 1.0 in runtime classpath!\"}"),
+                lines);
+
+        String sarif = new String(Files.readAllBytes(directory.resolve("report.sarif")), StandardCharsets.UTF_8);
+        Assertions.assertTrue(sarif.startsWith("{\n  \"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\",\n  \"version\": \"2.1.0\""), sarif);
+        Assertions.assertTrue(sarif.contains("{\"ruleId\": \"requireProvidedDependenciesInRuntimeClasspath/missing\", \"level\": \"error\""), sarif);
+        Assertions.assertTrue(sarif.contains("},\n      {\"ruleId\": \"requireProvidedDependenciesInRuntimeClasspath/incompatibleVersion\""), sarif);
+        Assertions.assertTrue(sarif.contains("\"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": \"file:/project/pom.xml\"}}}]"), sarif);
+        Assertions.assertTrue(sarif.endsWith("\"runtimeVersions\": [\"1.0\"]}}\n    ]\n  }]\n}\n"), sarif);
+    }
+
+    @Test
+    void testEmptySarif(@TempDir Path tempDir) throws IOException {
+        new ViolationReportWriter(tempDir, "report", Collections.singletonList(ViolationReportWriter.Format.SARIF), "pom.xml", false).close();
+        String sarif = new String(Files.readAllBytes(tempDir.resolve("report.sarif")), StandardCharsets.UTF_8);
+        Assertions.assertTrue(sarif.endsWith("\"results\": []\n  }]\n}\n"), sarif);
+    }
+
+    @Test
+    void testInvalidFormat() {
+        Assertions.assertEquals(ViolationReportWriter.Format.SARIF, ViolationReportWriter.Format.fromName(" Sarif"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ViolationReportWriter.Format.fromName("xml"));
+    }
+}